@@ -13,10 +13,11 @@ package jenkins.plugins.coverity;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.xml.ws.WebServiceException;
@@ -47,11 +48,16 @@ import com.coverity.ws.v9.StreamFilterSpecDataObj;
 import com.coverity.ws.v9.UserDataObj;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
+import com.sun.jersey.api.client.ClientHandlerException;
 
+import hudson.Util;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.FormValidation.Kind;
 import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.ws.ParallelPageFetcher;
+import jenkins.plugins.coverity.ws.ServicePool;
+import jenkins.plugins.coverity.ws.StreamingDefectService;
 import jenkins.plugins.coverity.ws.ViewContents;
 import jenkins.plugins.coverity.ws.ViewsService;
 import jenkins.plugins.coverity.ws.WebServiceFactory;
@@ -67,6 +73,21 @@ public class CIMInstance {
     private transient String password;
 
     private static final Logger logger = Logger.getLogger(CIMStream.class.getName());
+
+    /**
+     * Maximum number of view pages requested at the same time
+     */
+    public static final int VIEW_PAGE_PARALLELISM = Integer.getInteger(CIMInstance.class.getName() + ".viewPageParallelism", 4);
+
+    /**
+     * Number of times a view page request which failed to connect is retried
+     */
+    public static final int VIEW_PAGE_RETRIES = Integer.getInteger(CIMInstance.class.getName() + ".viewPageRetries", 2);
+
+    /**
+     * Time in milliseconds after which retrieving the issues of a view is abandoned
+     */
+    public static final long VIEW_TIME_BUDGET = Long.getLong(CIMInstance.class.getName() + ".viewTimeBudget", TimeUnit.MINUTES.toMillis(30));
     /**
      * The id for this instance, used as a key in CoverityPublisher
      */
@@ -143,6 +164,13 @@ public class CIMInstance {
 
     public String getCredentialId() { return credentialId; }
 
+    /**
+     * Digest of the user and password configured before credentials were used, or null when there are none
+     */
+    public String getLegacyCredentialDigest() {
+        return user != null || password != null ? Util.getDigestOf(user + ':' + password) : null;
+    }
+
     /**
      * Returns a Defect service client using v9 web services.
      */
@@ -157,6 +185,28 @@ public class CIMInstance {
         return WebServiceFactory.getInstance().getConfigurationService(this);
     }
 
+    /**
+     * Returns the pool of Defect service clients for this instance. Use this instead of {@link #getDefectService()}
+     * when the service is used from a build, which may run concurrently with other builds.
+     */
+    public ServicePool<DefectService> getDefectServicePool() {
+        return WebServiceFactory.getInstance().getDefectServicePool(this);
+    }
+
+    /**
+     * Returns a Defect service client which only keeps the merged defect fields shown for a build.
+     */
+    public StreamingDefectService getStreamingDefectService() throws MalformedURLException {
+        return WebServiceFactory.getInstance().getStreamingDefectService(this);
+    }
+
+    /**
+     * Returns the pool of Configuration service clients for this instance.
+     */
+    public ServicePool<ConfigurationService> getConfigurationServicePool() {
+        return WebServiceFactory.getInstance().getConfigurationServicePool(this);
+    }
+
     public ProjectDataObj getProject(String projectId) throws IOException, CovRemoteServiceException_Exception {
         List<ProjectDataObj> projects = new ArrayList<>();
         try {
@@ -178,10 +228,15 @@ public class CIMInstance {
 
     private transient Map<String, Long> projectKeys;
 
-    public Long getProjectKey(String projectId) throws IOException, CovRemoteServiceException_Exception {
+    private synchronized Map<String, Long> getProjectKeys() {
         if(projectKeys == null) {
             projectKeys = new ConcurrentHashMap<String, Long>();
         }
+        return projectKeys;
+    }
+
+    public Long getProjectKey(String projectId) throws IOException, CovRemoteServiceException_Exception {
+        final Map<String, Long> projectKeys = getProjectKeys();
 
         Long result = projectKeys.get(projectId);
         if(result == null) {
@@ -280,61 +335,104 @@ public class CIMInstance {
         Map<? extends Long, ? extends String> views;
         try {
             views = WebServiceFactory.getInstance().getViewService(this).getViews();
-        } catch (MalformedURLException | NoSuchAlgorithmException e) {
+        } catch (MalformedURLException | GeneralSecurityException e) {
             return ImmutableSortedMap.of();
         }
         return ImmutableSortedMap.copyOf(views);
     }
 
-    public List<CoverityDefect> getIssuesVorView(String projectId, String connectView, PrintStream outputLogger) throws Exception {
+    public List<CoverityDefect> getIssuesVorView(final String projectId, final String connectView, final PrintStream outputLogger) throws Exception {
         final Map<String, CoverityDefect> coverityDefects = new LinkedHashMap<>();
 
         try {
             final ViewsService viewService = WebServiceFactory.getInstance().getViewService(this);
-            int pageSize, defectSize;
-            pageSize = defectSize = 1000; // Size of page to be pulled
-            for(int pageStart = 0; pageStart < defectSize; pageStart += pageSize){
-                if (pageStart >= pageSize) {
-                    outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\" (fetched {2} of {3})", projectId, connectView, pageStart, defectSize));
-                } else {
-                    outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\"", projectId, connectView));
-                }
+            final int pageSize = 1000; // Size of page to be pulled
+            outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\"", projectId, connectView));
+
+            final ParallelPageFetcher fetcher = new ParallelPageFetcher(VIEW_PAGE_PARALLELISM, VIEW_PAGE_RETRIES, VIEW_TIME_BUDGET);
+            fetcher.fetch(getViewContentsSource(viewService, projectId, connectView), RuntimeException.class, pageSize, Integer.MAX_VALUE,
+                new ParallelPageFetcher.PageListener<ViewContents>() {
+                @Override
+                public void onPage(int startIndex, int total, ViewContents viewContents) {
+                    if (startIndex >= pageSize) {
+                        outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\" (fetched {2} of {3})", projectId, connectView, startIndex, total));
+                    } else {
+                        checkViewColumns(viewContents, connectView, outputLogger);
+                    }
 
-                final ViewContents viewContents = viewService.getViewContents(projectId, connectView, pageSize, pageStart);
-                if (!viewContents.getColumns().contains("cid")) {
-                    outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"cid\"", connectView));
+                    for (CoverityDefect defect : viewContents.getDefects()) {
+                        coverityDefects.put(String.valueOf(defect.getCid()), defect);
+                    }
                 }
+            });
 
-                if (!viewContents.getColumns().contains("checker")) {
-                    outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"checker\"", connectView));
-                }
+            outputLogger.println(MessageFormat.format("[Coverity] Found {0} issues for project \"{1}\" and view \"{2}\"", coverityDefects.size(), projectId, connectView));
 
-                if (!viewContents.getColumns().contains("displayFile")) {
-                    outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"displayFile\"", connectView));
-                }
+            } catch (MalformedURLException | GeneralSecurityException e) {
+                throw new Exception(e);
+        }
 
-                if (!viewContents.getColumns().contains("displayFunction")) {
-                    outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"displayFunction\"", connectView));
-                }
+        return new ArrayList<>(coverityDefects.values());
+    }
+
+    /**
+     * Returns the total number of issues in the view and the first sampleSize issues, reading only the first page
+     */
+    public ViewContents getIssueSampleForView(final String projectId, final String connectView, final int sampleSize, final PrintStream outputLogger) throws Exception {
+        final ViewContents[] firstPage = new ViewContents[1];
 
-                for (Map<String, Object> row : viewContents.getRows()){
-                    final Long cid = row.get("cid") != null ? Long.parseLong(row.get("cid").toString()) : null;
-                    final String checker = row.get("checker") != null ? row.get("checker").toString() : null;
-                    final String displayFunction = row.get("displayFunction") != null ? row.get("displayFunction").toString() : null;
-                    final String displayFile = row.get("displayFile") != null ? row.get("displayFile").toString() : null;
-                    coverityDefects.put(String.valueOf(cid), new CoverityDefect(cid, checker, displayFunction, displayFile));
+        try {
+            final ViewsService viewService = WebServiceFactory.getInstance().getViewService(this);
+            outputLogger.println(MessageFormat.format("[Coverity] Retrieving issue count for project \"{0}\" and view \"{1}\"", projectId, connectView));
+
+            // the view reports its total number of rows with every page, so one page of the sample size is enough
+            final int pageSize = Math.max(1, sampleSize);
+            final ParallelPageFetcher fetcher = new ParallelPageFetcher(1, VIEW_PAGE_RETRIES, VIEW_TIME_BUDGET);
+            fetcher.fetch(getViewContentsSource(viewService, projectId, connectView), RuntimeException.class, pageSize, pageSize,
+                new ParallelPageFetcher.PageListener<ViewContents>() {
+                @Override
+                public void onPage(int startIndex, int total, ViewContents viewContents) {
+                    checkViewColumns(viewContents, connectView, outputLogger);
+                    firstPage[0] = viewContents;
                 }
+            });
+        } catch (MalformedURLException | GeneralSecurityException e) {
+            throw new Exception(e);
+        }
 
-                defectSize = viewContents.getTotalRows().intValue();
+        final List<CoverityDefect> sample = firstPage[0].getDefects();
+        return new ViewContents(firstPage[0].getTotalRows(), 0L, firstPage[0].getColumns(),
+            sample.size() > sampleSize ? new ArrayList<>(sample.subList(0, sampleSize)) : sample);
+    }
+
+    private static ParallelPageFetcher.PageSource<ViewContents, RuntimeException> getViewContentsSource(final ViewsService viewService,
+                                                                                                       final String projectId, final String connectView) {
+        return new ParallelPageFetcher.PageSource<ViewContents, RuntimeException>() {
+            @Override
+            public ViewContents fetch(int startIndex, int pageSize) throws IOException {
+                return viewService.getViewContents(projectId, connectView, pageSize, startIndex);
             }
 
-            outputLogger.println(MessageFormat.format("[Coverity] Found {0} issues for project \"{1}\" and view \"{2}\"", coverityDefects.size(), projectId, connectView));
+            @Override
+            public int getTotal(ViewContents page) {
+                return page.getTotalRows().intValue();
+            }
 
-            } catch (MalformedURLException | NoSuchAlgorithmException e) {
-                throw new Exception(e);
-        }
+            @Override
+            public boolean isRetryable(Exception e) {
+                // connection failures, not error responses from the server
+                return e instanceof ClientHandlerException;
+            }
+        };
+    }
 
-        return new ArrayList<>(coverityDefects.values());
+    private static void checkViewColumns(ViewContents viewContents, String connectView, PrintStream outputLogger) {
+        // every page has the same columns
+        for (String column : Arrays.asList("cid", "checker", "displayFile", "displayFunction")) {
+            if (!viewContents.getColumns().contains(column)) {
+                outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"{1}\"", connectView, column));
+            }
+        }
     }
 
     /**
@@ -516,6 +614,8 @@ public class CIMInstance {
     public CIMInstance cloneWithCredential(String credentialId) {
         CIMInstance instance = new CIMInstance(name, host, port, credentialId);
         instance.setUseSSL(useSSL);
+        // project keys do not depend on the credential
+        instance.projectKeys = getProjectKeys();
         return instance;
     }
 
@@ -0,0 +1,550 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * For each CID reported by the builds of a job, the first and last build which reported it and the number of builds
+ * which did. The CIDs are kept sorted in a long array, so a CID is found by binary search, and each CID has the ranges
+ * of recorded builds which reported it without a gap. A build is merged in by its number when it completes, even when
+ * a later build completed first, and removed when it is deleted. The index is kept in a file in the job directory,
+ * which is only changed while holding the lock of that job.
+ */
+public final class CidIndex {
+    private static final Logger logger = Logger.getLogger(CidIndex.class.getName());
+
+    /**
+     * Number of job indexes kept in memory
+     */
+    public static final int CACHE_SIZE = Integer.getInteger(CidIndex.class.getName() + ".cacheSize", 50);
+
+    private static final String INDEX_FILE_NAME = "coverity-cids.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_BUILD = 0;
+
+    private static final Cache<File, CidIndex> indexes = CacheBuilder.newBuilder()
+        .maximumSize(CACHE_SIZE)
+        .softValues()
+        .build();
+
+    /**
+     * One instance of each index file, which is the lock of its job
+     */
+    private static final Interner<File> locks = Interners.newWeakInterner();
+
+    private final long[] cids;
+    /**
+     * The ranges of the CID at index i are the pairs of first and last build in rangeBounds from rangeOffsets[i] up to
+     * rangeOffsets[i + 1]. Both builds of a range are recorded builds.
+     */
+    private final int[] rangeOffsets;
+    private final int[] rangeBounds;
+    private final int[] recordedBuilds;
+
+    private CidIndex(long[] cids, int[] rangeOffsets, int[] rangeBounds, int[] recordedBuilds) {
+        this.cids = cids;
+        this.rangeOffsets = rangeOffsets;
+        this.rangeBounds = rangeBounds;
+        this.recordedBuilds = recordedBuilds;
+    }
+
+    /**
+     * An index without CIDs
+     */
+    public static CidIndex empty() {
+        return new CidIndex(new long[0], new int[1], new int[0], new int[0]);
+    }
+
+    /**
+     * When a CID was reported in the builds of a job
+     */
+    public static final class Lifetime {
+        private final long cid;
+        private final int firstBuild;
+        private final int lastBuild;
+        private final int occurrences;
+
+        public Lifetime(long cid, int firstBuild, int lastBuild, int occurrences) {
+            this.cid = cid;
+            this.firstBuild = firstBuild;
+            this.lastBuild = lastBuild;
+            this.occurrences = occurrences;
+        }
+
+        public long getCid() {
+            return cid;
+        }
+
+        public int getFirstBuild() {
+            return firstBuild;
+        }
+
+        public int getLastBuild() {
+            return lastBuild;
+        }
+
+        /**
+         * Number of builds which reported the CID
+         */
+        public int getOccurrences() {
+            return occurrences;
+        }
+    }
+
+    /**
+     * Returns when the CID was reported, or null if no build reported it
+     */
+    public Lifetime get(long cid) {
+        final int index = Arrays.binarySearch(cids, cid);
+        if (index < 0) {
+            return null;
+        }
+
+        final int first = rangeOffsets[index];
+        final int last = rangeOffsets[index + 1] - 1;
+        int occurrences = 0;
+        for (int r = first; r <= last; r++) {
+            occurrences += Arrays.binarySearch(recordedBuilds, rangeBounds[2 * r + 1])
+                - Arrays.binarySearch(recordedBuilds, rangeBounds[2 * r]) + 1;
+        }
+        return new Lifetime(cid, rangeBounds[2 * first], rangeBounds[2 * last + 1], occurrences);
+    }
+
+    /**
+     * Number of distinct CIDs
+     */
+    public int size() {
+        return cids.length;
+    }
+
+    /**
+     * Number of the last build merged into the index, 0 when there is none
+     */
+    public int getLastRecordedBuild() {
+        return recordedBuilds.length > 0 ? recordedBuilds[recordedBuilds.length - 1] : NO_BUILD;
+    }
+
+    /**
+     * Returns the index with the CIDs of a build merged in by its build number. The CIDs replace those of the build if it
+     * was merged before.
+     *
+     * @param sortedCids distinct CIDs of the build in ascending order
+     */
+    public CidIndex add(int buildNumber, long[] sortedCids) {
+        int position = Arrays.binarySearch(recordedBuilds, buildNumber);
+        if (position >= 0) {
+            return remove(buildNumber).add(buildNumber, sortedCids);
+        }
+        position = -position - 1;
+        final int previous = position > 0 ? recordedBuilds[position - 1] : NO_BUILD;
+        final int next = position < recordedBuilds.length ? recordedBuilds[position] : NO_BUILD;
+
+        final Builder merged = new Builder(cids.length + sortedCids.length, rangeBounds.length / 2 + sortedCids.length);
+        int i = 0;
+        int j = 0;
+        while (i < cids.length || j < sortedCids.length) {
+            if (j == sortedCids.length || (i < cids.length && cids[i] < sortedCids[j])) {
+                // a range over the build is split around it
+                for (int r = rangeOffsets[i]; r < rangeOffsets[i + 1]; r++) {
+                    final int start = rangeBounds[2 * r];
+                    final int end = rangeBounds[2 * r + 1];
+                    if (start < buildNumber && buildNumber < end) {
+                        merged.addRange(start, previous);
+                        merged.addRange(next, end);
+                    } else {
+                        merged.addRange(start, end);
+                    }
+                }
+                merged.addCid(cids[i++]);
+            } else if (i == cids.length || sortedCids[j] < cids[i]) {
+                merged.addRange(buildNumber, buildNumber);
+                merged.addCid(sortedCids[j++]);
+            } else {
+                boolean added = false;
+                for (int r = rangeOffsets[i]; r < rangeOffsets[i + 1]; r++) {
+                    final int start = rangeBounds[2 * r];
+                    final int end = rangeBounds[2 * r + 1];
+                    if (!added && buildNumber < start) {
+                        merged.addRange(buildNumber, buildNumber, previous, buildNumber, next);
+                    }
+                    added = added || buildNumber <= end;
+                    merged.addRange(start, end, previous, buildNumber, next);
+                }
+                if (!added) {
+                    merged.addRange(buildNumber, buildNumber, previous, buildNumber, next);
+                }
+                merged.addCid(cids[i++]);
+                j++;
+            }
+        }
+
+        final int[] builds = new int[recordedBuilds.length + 1];
+        System.arraycopy(recordedBuilds, 0, builds, 0, position);
+        builds[position] = buildNumber;
+        System.arraycopy(recordedBuilds, position, builds, position + 1, recordedBuilds.length - position);
+        return merged.build(builds);
+    }
+
+    /**
+     * Returns the index without a build, or this index if the build was not merged in. CIDs only reported by the build
+     * are removed.
+     */
+    public CidIndex remove(int buildNumber) {
+        final int position = Arrays.binarySearch(recordedBuilds, buildNumber);
+        if (position < 0) {
+            return this;
+        }
+        final int previous = position > 0 ? recordedBuilds[position - 1] : NO_BUILD;
+        final int next = position + 1 < recordedBuilds.length ? recordedBuilds[position + 1] : NO_BUILD;
+
+        final Builder kept = new Builder(cids.length, rangeBounds.length / 2);
+        for (int i = 0; i < cids.length; i++) {
+            for (int r = rangeOffsets[i]; r < rangeOffsets[i + 1]; r++) {
+                final int start = rangeBounds[2 * r];
+                final int end = rangeBounds[2 * r + 1];
+                if (start == buildNumber && end == buildNumber) {
+                    continue;
+                }
+                // a CID only missing from the deleted build has its ranges on either side of it joined
+                kept.addRange(start == buildNumber ? next : start, end == buildNumber ? previous : end, previous,
+                    buildNumber, next);
+            }
+            kept.addCid(cids[i]);
+        }
+
+        final int[] builds = new int[recordedBuilds.length - 1];
+        System.arraycopy(recordedBuilds, 0, builds, 0, position);
+        System.arraycopy(recordedBuilds, position + 1, builds, position, builds.length - position);
+        return kept.build(builds);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(recordedBuilds.length);
+        for (int build : recordedBuilds) {
+            out.writeInt(build);
+        }
+        out.writeInt(cids.length);
+        for (int i = 0; i < cids.length; i++) {
+            out.writeLong(cids[i]);
+            out.writeInt(rangeOffsets[i + 1] - rangeOffsets[i]);
+            for (int r = rangeOffsets[i]; r < rangeOffsets[i + 1]; r++) {
+                out.writeInt(rangeBounds[2 * r]);
+                out.writeInt(rangeBounds[2 * r + 1]);
+            }
+        }
+    }
+
+    public static CidIndex readFrom(DataInputStream in) throws IOException {
+        final int buildCount = in.readInt();
+        if (buildCount < 0 || buildCount > DefectTable.MAX_ROWS) {
+            throw new IOException("Invalid build count " + buildCount);
+        }
+        final int[] recordedBuilds = new int[buildCount];
+        for (int i = 0; i < recordedBuilds.length; i++) {
+            recordedBuilds[i] = in.readInt();
+            if (recordedBuilds[i] <= (i > 0 ? recordedBuilds[i - 1] : NO_BUILD)) {
+                throw new IOException("Builds are not sorted at " + i);
+            }
+        }
+
+        final int count = in.readInt();
+        if (count < 0 || count > DefectTable.MAX_ROWS) {
+            throw new IOException("Invalid CID count " + count);
+        }
+        final Builder index = new Builder(count, count);
+        long previousCid = 0;
+        for (int i = 0; i < count; i++) {
+            final long cid = in.readLong();
+            if (i > 0 && cid <= previousCid) {
+                throw new IOException("CIDs are not sorted at " + i);
+            }
+            final int ranges = in.readInt();
+            if (ranges <= 0) {
+                throw new IOException("CID " + cid + " has no builds");
+            }
+            int previousEnd = NO_BUILD;
+            for (int r = 0; r < ranges; r++) {
+                final int start = in.readInt();
+                final int end = in.readInt();
+                if (start <= previousEnd || end < start || Arrays.binarySearch(recordedBuilds, start) < 0
+                    || Arrays.binarySearch(recordedBuilds, end) < 0) {
+                    throw new IOException("Invalid builds " + start + " to " + end + " of CID " + cid);
+                }
+                index.addRange(start, end);
+                previousEnd = end;
+            }
+            index.addCid(cid);
+            previousCid = cid;
+        }
+        return index.build(recordedBuilds);
+    }
+
+    /**
+     * Collects the CIDs of an index in ascending order, each after its ranges
+     */
+    private static final class Builder {
+        private long[] cids;
+        /**
+         * rangeOffsets[size] is the first range of the CID being collected
+         */
+        private int[] rangeOffsets;
+        private int[] rangeBounds;
+        private int size;
+        private int ranges;
+
+        Builder(int expectedCids, int expectedRanges) {
+            cids = new long[Math.max(1, expectedCids)];
+            rangeOffsets = new int[cids.length + 1];
+            rangeBounds = new int[2 * Math.max(1, expectedRanges)];
+        }
+
+        void addRange(int start, int end) {
+            if (2 * ranges == rangeBounds.length) {
+                rangeBounds = Arrays.copyOf(rangeBounds, rangeBounds.length * 2);
+            }
+            rangeBounds[2 * ranges] = start;
+            rangeBounds[2 * ranges + 1] = end;
+            ranges++;
+        }
+
+        /**
+         * Adds a range, or joins it to the last range of the CID when there is no recorded build between them. Only
+         * the builds next to a build which was added or removed can be joined.
+         */
+        void addRange(int start, int end, int previous, int buildNumber, int next) {
+            final int lastEnd = ranges > rangeOffsets[size] ? rangeBounds[2 * ranges - 1] : NO_BUILD;
+            if (lastEnd != NO_BUILD && ((lastEnd == previous && (start == buildNumber || start == next))
+                || (lastEnd == buildNumber && start == next))) {
+                rangeBounds[2 * ranges - 1] = end;
+            } else {
+                addRange(start, end);
+            }
+        }
+
+        /**
+         * Adds a CID with the ranges added since the previous CID, or drops it when there are none
+         */
+        void addCid(long cid) {
+            if (ranges == rangeOffsets[size]) {
+                return;
+            }
+            if (size == cids.length) {
+                cids = Arrays.copyOf(cids, cids.length * 2);
+                rangeOffsets = Arrays.copyOf(rangeOffsets, cids.length + 1);
+            }
+            cids[size++] = cid;
+            rangeOffsets[size] = ranges;
+        }
+
+        CidIndex build(int[] recordedBuilds) {
+            return new CidIndex(Arrays.copyOf(cids, size), Arrays.copyOf(rangeOffsets, size + 1),
+                Arrays.copyOf(rangeBounds, 2 * ranges), recordedBuilds);
+        }
+    }
+
+    /**
+     * The index of the job, read from its file or created from its builds when there is no file yet
+     */
+    public static CidIndex of(Job<?, ?> job) {
+        final File file = locks.intern(getFile(job));
+        synchronized (file) {
+            CidIndex index = load(job, file);
+            if (index == null) {
+                index = rebuild(job, file);
+                indexes.put(file, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Merges the CIDs of a completed build into the index of its job. A job without an index is left alone, its index
+     * is created from the build history when it is first needed.
+     */
+    public static void record(Run<?, ?> run) {
+        final long[] sortedCids = cidsOf(run);
+        if (sortedCids == null) {
+            return;
+        }
+
+        final File file = locks.intern(getFile(run.getParent()));
+        synchronized (file) {
+            final CidIndex index = load(run.getParent(), file);
+            if (index != null) {
+                update(file, index.add(run.getNumber(), sortedCids), "add " + run + " to");
+            }
+        }
+    }
+
+    /**
+     * Removes a deleted build from the index of its job
+     */
+    public static void remove(Run<?, ?> run) {
+        final File file = locks.intern(getFile(run.getParent()));
+        synchronized (file) {
+            final CidIndex index = load(run.getParent(), file);
+            if (index != null) {
+                final CidIndex updated = index.remove(run.getNumber());
+                if (updated != index) {
+                    update(file, updated, "remove " + run + " from");
+                }
+            }
+        }
+    }
+
+    /**
+     * The index in memory or in the file, null when there is none
+     */
+    private static CidIndex load(Job<?, ?> job, File file) {
+        CidIndex index = indexes.getIfPresent(file);
+        if (index == null && file.isFile()) {
+            try {
+                index = read(file);
+                indexes.put(file, index);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read the Coverity CID index of " + job + " from " + file, e);
+            }
+        }
+        return index;
+    }
+
+    private static void update(File file, CidIndex index, String action) {
+        try {
+            write(file, index);
+            indexes.put(file, index);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to " + action + " the Coverity CID index in " + file, e);
+            // created again from the build history the next time it is needed
+            indexes.invalidate(file);
+            file.delete();
+        }
+    }
+
+    /**
+     * The distinct CIDs of the Coverity actions of a build in ascending order, null when the build has no action with
+     * all of its defects
+     */
+    static long[] cidsOf(Run<?, ?> run) {
+        final List<long[]> actionCids = new ArrayList<>();
+        int count = 0;
+        for (CoverityBuildAction action : run.getActions(CoverityBuildAction.class)) {
+            // the defects of count-only builds would have to be fetched, sampled builds do not have all of them
+            if (action != null && !action.isCountOnly() && !action.isSampled()) {
+                final long[] cids = action.getSortedCids();
+                actionCids.add(cids);
+                count += cids.length;
+            }
+        }
+        if (actionCids.isEmpty()) {
+            return null;
+        } else if (actionCids.size() == 1) {
+            return actionCids.get(0);
+        }
+
+        final long[] cids = new long[count];
+        int offset = 0;
+        for (long[] a : actionCids) {
+            System.arraycopy(a, 0, cids, offset, a.length);
+            offset += a.length;
+        }
+        Arrays.sort(cids);
+        int distinct = 0;
+        for (int i = 0; i < cids.length; i++) {
+            if (distinct == 0 || cids[distinct - 1] != cids[i]) {
+                cids[distinct++] = cids[i];
+            }
+        }
+        return Arrays.copyOf(cids, distinct);
+    }
+
+    private static File getFile(Job<?, ?> job) {
+        return new File(job.getRootDir(), INDEX_FILE_NAME);
+    }
+
+    /**
+     * Creates the index from the completed builds of the job, which loads every build once
+     */
+    private static CidIndex rebuild(Job<?, ?> job, File file) {
+        final List<Run<?, ?>> builds = new ArrayList<>();
+        Run<?, ?> build = job.getLastCompletedBuild();
+        while (build != null) {
+            builds.add(build);
+            build = build.getPreviousBuild();
+        }
+        Collections.reverse(builds);
+
+        CidIndex index = empty();
+        for (Run<?, ?> b : builds) {
+            final long[] sortedCids = cidsOf(b);
+            if (sortedCids != null) {
+                index = index.add(b.getNumber(), sortedCids);
+            }
+        }
+
+        try {
+            write(file, index);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the Coverity CID index of " + job + " to " + file, e);
+        }
+        return index;
+    }
+
+    static CidIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version + " of " + file);
+            }
+            return readFrom(in);
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file which then replaces the file, so readers never see a partial file
+     */
+    static void write(File file, CidIndex index) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            index.writeTo(out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+}
@@ -10,15 +10,32 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.ws.WebServiceException;
 
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.google.common.base.Throwables;
 
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -26,24 +43,90 @@ import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
+import jenkins.plugins.coverity.ws.DefectReader;
 import jenkins.tasks.SimpleBuildStep.LastBuildAction;
+import jenkins.util.Timer;
 
 /**
  * Captures Coverity information for a single build, including a snapshot of cim instance, project and stream, and a
  * filtered list of defects. This shows a link on the left side of each build page, which goes to a list of defects from
  * that build.
  */
-public class CoverityBuildAction implements LastBuildAction {
+public class CoverityBuildAction implements LastBuildAction, RunAction2 {
+    private static final Logger logger = Logger.getLogger(CoverityBuildAction.class.getName());
+
     public static final String BUILD_ACTION_IDENTIFIER = "coverity_defects";
 
+    /**
+     * Time in milliseconds after which the project key is requested again when Coverity Connect did not know the
+     * project or could not be reached
+     */
+    public static final long PROJECT_KEY_RETRY_INTERVAL = Long.getLong(CoverityBuildAction.class.getName() + ".projectKeyRetryInterval",
+        TimeUnit.MINUTES.toMillis(10));
+
     // deprecated defectIds field
     private transient List<Long> defectIds;
 
-    private final Run<?, ?>  build;
+    private static final String DEFECTS_FILE_NAME = "coverity-defects";
+
+    private Run<?, ?>  build;
     private final String projectId;
     private final String streamId;
     private final String cimInstance;
-    private final List<CoverityDefect> defects;
+    /**
+     * Defects which are not written to the defects file yet, either for a new action or for a build recorded before the
+     * defects were kept in a file
+     */
+    private List<CoverityDefect> defects;
+    /**
+     * Name of the file in the build directory the defects are kept in and the number of defects it contains
+     */
+    private String defectsFile;
+    private Integer storedDefects;
+    private transient SoftReference<List<CoverityDefect>> loadedDefects;
+
+    /**
+     * Snapshot the defects were read from and digest of the defect filters used, null when the defects cannot be used
+     * as the base of an incremental fetch
+     */
+    private Long snapshotId;
+    private String filterDigest;
+    /**
+     * Number of incremental fetches since defects were last fetched in full
+     */
+    private int incrementalFetches;
+
+    /**
+     * Number of defects, credential and filters of a build which only counted its defects. The defects are fetched
+     * from the recorded snapshot when they are first needed.
+     */
+    private Integer defectCount;
+    private String credentialId;
+    private DefectFilters defectFilters;
+
+    /**
+     * CIDs which appeared and disappeared since the previous build, null when the builds were not compared
+     */
+    private long[] newCids;
+    private long[] fixedCids;
+
+    /**
+     * Key of the project in Coverity Connect, kept so the defect URLs can be built without asking the instance for it
+     */
+    private Long projectKey;
+    private transient String defectUrlPrefix;
+    private transient long projectKeyRetryTime;
+
+    /**
+     * Fetch of the defects of a build which only counted them, so concurrent requests wait for the same fetch
+     */
+    private transient FutureTask<List<CoverityDefect>> fetchingDefects;
+
+    /**
+     * Defects of the last sort order and filter of the defects page, so its pages are served without sorting again
+     */
+    private transient volatile SoftReference<DefectQuery.Selection> lastSelection;
 
     public CoverityBuildAction(Run<?, ?> build, String projectId, String streamId, String cimInstance, List<CoverityDefect> defects) {
         this.build = build;
@@ -51,6 +134,27 @@ public class CoverityBuildAction implements LastBuildAction {
         this.streamId = streamId;
         this.cimInstance = cimInstance;
         this.defects = defects;
+        this.defectCount = defects != null ? defects.size() : null;
+    }
+
+    /**
+     * Creates the action for a build which only counted the defects matching the filters
+     */
+    public CoverityBuildAction(Run<?, ?> build, String projectId, String streamId, String cimInstance, String credentialId,
+                               DefectFilters defectFilters, int defectCount) {
+        this(build, projectId, streamId, cimInstance, null);
+        this.credentialId = credentialId;
+        this.defectFilters = defectFilters;
+        this.defectCount = defectCount;
+    }
+
+    /**
+     * Creates the action for a build which kept a sample of the defects and their total number
+     */
+    public CoverityBuildAction(Run<?, ?> build, String projectId, String streamId, String cimInstance, List<CoverityDefect> sample,
+                               int defectCount) {
+        this(build, projectId, streamId, cimInstance, sample);
+        this.defectCount = defectCount;
     }
 
     /**
@@ -60,31 +164,327 @@ public class CoverityBuildAction implements LastBuildAction {
         return (AbstractBuild)build;
     }
 
+    /**
+     * URL of the owning run, relative to the root URL of Jenkins
+     */
+    public String getRunUrl() {
+        return build != null ? build.getUrl() : StringUtils.EMPTY;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        build = r;
+        storeDefects();
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        build = r;
+        if (defects != null && !defects.isEmpty() && storeDefects()) {
+            // the defects were read from build.xml of a build recorded before they were kept in a file
+            if (defectCount == null) {
+                defectCount = storedDefects;
+            }
+            Timer.get().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        build.save();
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Unable to save " + build + " after moving its Coverity defects to " + defectsFile, e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Moves the defects to a file in the build directory, keeping them in build.xml if the file cannot be written
+     */
+    private synchronized boolean storeDefects() {
+        if (defects == null || build == null) {
+            return false;
+        }
+
+        File file = new File(build.getRootDir(), DEFECTS_FILE_NAME + ".bin");
+        // a run can publish the defects of several streams or views
+        for (int i = 1; file.exists(); i++) {
+            file = new File(build.getRootDir(), DEFECTS_FILE_NAME + "-" + i + ".bin");
+        }
+
+        final DefectTable table = DefectTable.of(defects);
+        try {
+            DefectFile.write(file, table);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the Coverity defects of " + build + " to " + file, e);
+            return false;
+        }
+
+        defectsFile = file.getName();
+        storedDefects = defects.size();
+        loadedDefects = new SoftReference<List<CoverityDefect>>(table);
+        defects = null;
+        return true;
+    }
+
     /**
      * The data for the defects that were captured for this build.
      */
     public List<CoverityDefect> getDefects() {
+        synchronized (this) {
+            // use defectIds field if specified to support older builds (pre-1.9.0 plugin)
+            if (defectIds != null && !defectIds.isEmpty()) {
+                List<CoverityDefect> covDefects = new ArrayList<>();
+                for(Long defectId : defectIds) {
+                    covDefects.add(new CoverityDefect(defectId, "---", "View in Coverity Connect", StringUtils.EMPTY));
+                }
+                return covDefects;
+            } else if (defects != null) {
+                return defects;
+            } else if (defectsFile != null) {
+                return getStoredDefects();
+            } else if (defectCount == null) {
+                return new ArrayList<>();
+            }
+        }
+        // not while holding the lock of the action, so the build page is not blocked while the defects are fetched
+        return getFetchedDefects();
+    }
+
+    /**
+     * The number of defects captured for this build, without fetching the defects of a build which only counted them
+     */
+    public int getDefectCount() {
+        if (defectCount != null && (defectIds == null || defectIds.isEmpty())) {
+            return defectCount;
+        }
+        return getDefects().size();
+    }
+
+    /**
+     * Whether the build only counted its defects
+     */
+    public boolean isCountOnly() {
+        return defects == null && defectsFile == null && defectCount != null && (defectIds == null || defectIds.isEmpty());
+    }
+
+    /**
+     * Whether only a sample of the defects was kept
+     */
+    public boolean isSampled() {
+        final Integer kept = defects != null ? Integer.valueOf(defects.size()) : storedDefects;
+        return kept != null && defectCount != null && defectCount > kept;
+    }
+
+    private synchronized List<CoverityDefect> getStoredDefects() {
+        List<CoverityDefect> stored = loadedDefects != null ? loadedDefects.get() : null;
+        if (stored == null) {
+            final File file = new File(build.getRootDir(), defectsFile);
+            try {
+                stored = DefectFile.read(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read the Coverity defects of " + build + " from " + file, e);
+                return new ArrayList<>();
+            }
+            loadedDefects = new SoftReference<>(stored);
+        }
+        return stored;
+    }
+
+    private List<CoverityDefect> getFetchedDefects() {
+        final FutureTask<List<CoverityDefect>> fetch;
+        final boolean fetchedHere;
+        synchronized (this) {
+            final List<CoverityDefect> fetchedDefects = loadedDefects != null ? loadedDefects.get() : null;
+            if (fetchedDefects != null) {
+                return fetchedDefects;
+            }
+            fetchedHere = fetchingDefects == null;
+            if (fetchedHere) {
+                fetchingDefects = new FutureTask<>(new Callable<List<CoverityDefect>>() {
+                    @Override
+                    public List<CoverityDefect> call() {
+                        return fetchDefects();
+                    }
+                });
+            }
+            fetch = fetchingDefects;
+        }
+
+        if (fetchedHere) {
+            try {
+                fetch.run();
+            } finally {
+                synchronized (this) {
+                    fetchingDefects = null;
+                }
+            }
+        }
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
 
-        // use defectIds field if specified to support older builds (pre-1.9.0 plugin)
-        if (defectIds != null && !defectIds.isEmpty()) {
-            List<CoverityDefect> covDefects = new ArrayList<>();
-            for(Long defectId : defectIds) {
-                covDefects.add(new CoverityDefect(defectId, "---", "View in Coverity Connect", StringUtils.EMPTY));
+    private List<CoverityDefect> fetchDefects() {
+        CoverityPublisher.DescriptorImpl descriptor = Jenkins.getInstance().getDescriptorByType(CoverityPublisher.DescriptorImpl.class);
+        CIMInstance instance = descriptor.getInstance(cimInstance);
+        if (instance == null) {
+            return new ArrayList<>();
+        }
+        if (StringUtils.isNotEmpty(credentialId)) {
+            instance = instance.cloneWithCredential(credentialId);
+        }
+
+        try {
+            final List<CoverityDefect> fetchedDefects = DefectTable.of(DefectReader.fetchDefectsForSnapshot(instance, streamId, defectFilters, snapshotId, descriptor));
+            synchronized (this) {
+                loadedDefects = new SoftReference<>(fetchedDefects);
             }
-            return covDefects;
-        }  else {
-            return defects != null ? defects : new ArrayList<CoverityDefect>();
+            return fetchedDefects;
+        } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+            // not kept, so the defects are fetched again the next time they are needed
+            logger.log(Level.WARNING, "Unable to fetch defects of stream " + streamId + " for " + build, e);
+            return new ArrayList<>();
         }
     }
 
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public String getCimInstance() {
+        return cimInstance;
+    }
+
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    public String getFilterDigest() {
+        return filterDigest;
+    }
+
+    public int getIncrementalFetches() {
+        return incrementalFetches;
+    }
+
+    /**
+     * Records the snapshot and filters the defects were read with, so the next build can fetch only the changes
+     */
+    public void setSnapshot(Long snapshotId, String filterDigest, int incrementalFetches) {
+        this.snapshotId = snapshotId;
+        this.filterDigest = filterDigest;
+        this.incrementalFetches = incrementalFetches;
+    }
+
+    /**
+     * Records the CIDs which appeared and disappeared since the previous build
+     */
+    public void setDiff(DefectDiff diff) {
+        this.newCids = diff.getNewCids();
+        this.fixedCids = diff.getFixedCids();
+    }
+
+    /**
+     * Whether the defects were compared with the previous build
+     */
+    public boolean isCompared() {
+        return newCids != null && fixedCids != null;
+    }
+
+    public int getNewDefectCount() {
+        return newCids != null ? newCids.length : 0;
+    }
+
+    public int getFixedDefectCount() {
+        return fixedCids != null ? fixedCids.length : 0;
+    }
+
+    public long[] getNewCids() {
+        return newCids != null ? newCids.clone() : new long[0];
+    }
+
+    public long[] getFixedCids() {
+        return fixedCids != null ? fixedCids.clone() : new long[0];
+    }
+
+    /**
+     * The distinct CIDs of the defects in ascending order
+     */
+    public long[] getSortedCids() {
+        return DefectTable.of(getDefects()).getSortedCids();
+    }
+
     /**
      * Returns the URL to the page for this defect in the CIM instance.
      */
     public String getURL(CoverityDefect defect) throws IOException, CovRemoteServiceException_Exception {
-        CIMInstance instance = Jenkins.getInstance().getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(cimInstance);
+        final String urlPrefix = getDefectUrlPrefix();
+        return urlPrefix != null ? urlPrefix + defect.getCid() : StringUtils.EMPTY;
+    }
+
+    /**
+     * Returns the URL to the page of a defect in the CIM instance without the CID, or null if the instance or the
+     * project is unknown. The URL is built once per action, and the project key is only requested from the instance
+     * when it was not recorded with the build. When the project cannot be resolved it is not requested again for
+     * {@link #PROJECT_KEY_RETRY_INTERVAL}.
+     */
+    private String getDefectUrlPrefix() throws IOException, CovRemoteServiceException_Exception {
+        Long key;
+        synchronized (this) {
+            if (defectUrlPrefix != null) {
+                return defectUrlPrefix;
+            }
+            key = projectKey;
+            if (key == null && System.currentTimeMillis() < projectKeyRetryTime) {
+                return null;
+            }
+        }
+
+        CIMInstance instance = getInstance();
 
         if (instance == null){
-            return StringUtils.EMPTY;
+            return null;
+        }
+
+        if (key == null) {
+            // not while holding the lock of the action, the instance may take long to answer
+            try {
+                key = instance.getProjectKey(projectId);
+            } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+                retryProjectKeyLater();
+                throw e;
+            }
+            if (key == null) {
+                logger.fine("Coverity Connect project " + projectId + " of " + build + " is unknown");
+                retryProjectKeyLater();
+                return null;
+            }
+            synchronized (this) {
+                projectKey = key;
+            }
+            if (build != null) {
+                // keep the key for the next time the build is loaded
+                Timer.get().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            build.save();
+                        } catch (IOException e) {
+                            logger.log(Level.WARNING, "Unable to save " + build + " after resolving its Coverity Connect project", e);
+                        }
+                    }
+                });
+            }
         }
 
         String header = "http";
@@ -93,8 +493,116 @@ public class CoverityBuildAction implements LastBuildAction {
             header = "https";
         }
 
-        return String.format(header + "://%s:%d/sourcebrowser.htm?projectId=%s&mergedDefectId=%d",
-                instance.getHost(), instance.getPort(), instance.getProjectKey(projectId), defect.getCid());
+        final String urlPrefix = String.format(header + "://%s:%d/sourcebrowser.htm?projectId=%s&mergedDefectId=",
+                instance.getHost(), instance.getPort(), key);
+        synchronized (this) {
+            defectUrlPrefix = urlPrefix;
+        }
+        return urlPrefix;
+    }
+
+    private synchronized void retryProjectKeyLater() {
+        projectKeyRetryTime = System.currentTimeMillis() + PROJECT_KEY_RETRY_INTERVAL;
+    }
+
+    private CIMInstance getInstance() {
+        return Jenkins.getInstance().getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(cimInstance);
+    }
+
+    /**
+     * Returns a sorted and filtered page of the defects as JSON. The parameters are the index of the first defect
+     * (start), the number of defects (count), the column to sort by (sort: cid, checker, function or file), the sort
+     * order (order: asc or desc) and text the CID, checker, function or file has to contain (filter).
+     */
+    public void doDefects(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final DefectQuery query = new DefectQuery(getIntParameter(req, "start", 0), getIntParameter(req, "count", 100),
+            req.getParameter("sort"), req.getParameter("order"), req.getParameter("filter"));
+
+        final List<CoverityDefect> defects = getDefects();
+        final SoftReference<DefectQuery.Selection> last = lastSelection;
+        DefectQuery.Selection selection = last != null ? last.get() : null;
+        if (selection == null || !query.isSelectedBy(selection, defects)) {
+            selection = query.select(defects);
+            lastSelection = new SoftReference<>(selection);
+        }
+
+        rsp.setContentType("application/json; charset=utf-8");
+        rsp.getOutputStream().write(query.toJSON(selection, getDefectUrlPrefixOrNull()).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes all defects as newline delimited JSON or CSV (format: ndjson or csv), optionally only those of some
+     * checkers (checker) and components (component). Both filters can be given more than once. The response is
+     * compressed when the client accepts gzip.
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final DefectExport.Format format = DefectExport.Format.parse(req.getParameter("format"));
+        if (format == null) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, "Unsupported format " + req.getParameter("format"));
+            return;
+        }
+        final DefectExport export = new DefectExport(format, req.getParameterValues("checker"), req.getParameterValues("component"));
+        final String urlPrefix = getDefectUrlPrefixOrNull();
+
+        rsp.setContentType(format.getContentType() + "; charset=utf-8");
+        rsp.setHeader("Content-Disposition", "attachment; filename=coverity-defects-" +
+            (build != null ? build.getNumber() : 0) + "." + format.getExtension());
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(rsp.getCompressedOutputStream(req), StandardCharsets.UTF_8))) {
+            export(export, urlPrefix, out);
+        }
+    }
+
+    /**
+     * Writes the defects with the export. Defects kept in the defects file and not loaded are read from the file one at
+     * a time, so exporting a large build does not load all of its defects.
+     */
+    private void export(DefectExport export, String urlPrefix, Writer out) throws IOException {
+        final File file;
+        synchronized (this) {
+            final boolean loaded = loadedDefects != null && loadedDefects.get() != null;
+            file = (defectIds == null || defectIds.isEmpty()) && defects == null && defectsFile != null && !loaded
+                ? new File(build.getRootDir(), defectsFile) : null;
+        }
+        if (file == null) {
+            export.write(getDefects(), urlPrefix, out);
+            return;
+        }
+
+        final DefectTable.Rows rows;
+        try {
+            rows = DefectFile.readRows(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read the Coverity defects of " + build + " from " + file, e);
+            export.write(Collections.<CoverityDefect>emptyList(), urlPrefix, out);
+            return;
+        }
+        try {
+            export.write(rows, urlPrefix, out);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Returns the URL prefix of the defects, or null when it cannot be resolved
+     */
+    private String getDefectUrlPrefixOrNull() {
+        try {
+            // resolved once, not for every defect
+            return getDefectUrlPrefix();
+        } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+            logger.log(Level.WARNING, "Unable to resolve the Coverity Connect project of " + build, e);
+            return null;
+        }
+    }
+
+    private static int getIntParameter(StaplerRequest req, String name, int defaultValue) {
+        try {
+            final String value = req.getParameter(name);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     public String getIconFileName() {
@@ -15,12 +15,18 @@ public class CoverityDefect {
     private final String checkerName;
     private final String functionDisplayName;
     private final String filePathname;
+    private final String componentName;
 
     public CoverityDefect(Long cid, String checkerName, String functionDisplayName, String filePathname) {
+        this(cid, checkerName, functionDisplayName, filePathname, null);
+    }
+
+    public CoverityDefect(Long cid, String checkerName, String functionDisplayName, String filePathname, String componentName) {
         this.cid = cid;
         this.checkerName = checkerName;
         this.functionDisplayName = functionDisplayName;
         this.filePathname = filePathname;
+        this.componentName = componentName;
     }
 
     public Long getCid() {
@@ -38,4 +44,11 @@ public class CoverityDefect {
     public String getFilePathname() {
         return filePathname;
     }
+
+    /**
+     * Name of the component the file belongs to, null when it was not read
+     */
+    public String getComponentName() {
+        return componentName;
+    }
 }
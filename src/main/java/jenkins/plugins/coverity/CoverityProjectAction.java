@@ -10,17 +10,22 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
-import hudson.model.AbstractBuild;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import hudson.Util;
 import hudson.model.Action;
 import hudson.model.Job;
-import hudson.model.Run;
+import hudson.util.ChartUtil;
 import hudson.util.DataSetBuilder;
 import hudson.util.Graph;
 import hudson.util.ShiftedCategoryAxis;
 import hudson.util.StackedAreaRenderer2;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
@@ -29,16 +34,49 @@ import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleInsets;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 /**
- * Project-level action for Coverity. This is used to to display the history graph.
+ * Project-level action for Coverity. This is used to to display the history graph, which is drawn in the browser from
+ * the trend data of the job or served as an image to browsers without scripts, and to look up when a CID was reported.
  */
 public class CoverityProjectAction implements Action {
 
+    /**
+     * Number of builds shown in the trend graph unless another number is chosen
+     */
+    public static final int TREND_BUILDS = Integer.getInteger(CoverityProjectAction.class.getName() + ".trendBuilds", 50);
+
+    /**
+     * Number of rendered trend graphs kept in memory, for all jobs and sizes
+     */
+    public static final int GRAPH_CACHE_SIZE = Integer.getInteger(CoverityProjectAction.class.getName() + ".graphCacheSize", 100);
+
+    private static final int DEFAULT_WIDTH = 600;
+    private static final int DEFAULT_HEIGHT = 300;
+    private static final int MAX_SIZE = 2000;
+
+    /**
+     * PNG images of the trend graphs, by job, version of its trend and size. An entry is not used any more once the
+     * trend of the job changes, and then ages out.
+     */
+    private static final Cache<String, byte[]> graphs = CacheBuilder.newBuilder()
+        .maximumSize(GRAPH_CACHE_SIZE)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+
     private final Job<?, ?> project;
 
     public CoverityProjectAction(Job<?, ?> project) {
@@ -61,27 +99,156 @@ public class CoverityProjectAction implements Action {
         return "coverity";
     }
 
+    public int getTrendBuilds() {
+        return TREND_BUILDS;
+    }
+
+    /**
+     * Returns when a CID was reported in the builds of the job, or null if it is not a CID or no build reported it
+     */
+    public CidIndex.Lifetime getCidLifetime(String cid) {
+        final Long value = parseCid(cid);
+        return value != null ? CidIndex.of(project).get(value) : null;
+    }
+
+    /**
+     * Returns the first and last build which reported a CID (cid) and the number of builds which did as JSON
+     */
+    public void doCid(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final Long cid = parseCid(req.getParameter("cid"));
+        if (cid == null) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, "Missing or invalid cid");
+            return;
+        }
+        final CidIndex.Lifetime lifetime = CidIndex.of(project).get(cid);
+        if (lifetime == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND, "CID " + cid + " was not reported by any build");
+            return;
+        }
+
+        final JSONObject result = new JSONObject();
+        result.put("cid", lifetime.getCid());
+        result.put("firstBuild", lifetime.getFirstBuild());
+        result.put("lastBuild", lifetime.getLastBuild());
+        result.put("occurrences", lifetime.getOccurrences());
+        rsp.setContentType("application/json; charset=utf-8");
+        rsp.getOutputStream().write(result.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long parseCid(String cid) {
+        try {
+            return cid != null ? Long.valueOf(cid.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the defect counts of the last builds as JSON. The number of builds is given by the builds parameter,
+     * which is a number or "all".
+     */
+    public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final String builds = req.getParameter("builds");
+        int maxBuilds = TREND_BUILDS;
+        if ("all".equals(builds)) {
+            maxBuilds = Integer.MAX_VALUE;
+        } else if (builds != null) {
+            try {
+                maxBuilds = Math.max(1, Integer.parseInt(builds));
+            } catch (NumberFormatException e) {
+                // the default window
+            }
+        }
+
+        final String version = DefectTrend.getVersion(project);
+        final long lastModified = DefectTrend.getLastModified(project);
+        if (version != null && lastModified > 0) {
+            final String etag = '"' + Util.getDigestOf(project.getFullName() + '@' + version + '/' + maxBuilds) + '"';
+            rsp.setHeader("ETag", etag);
+            rsp.setDateHeader("Last-Modified", lastModified);
+            // the date has a resolution of seconds, so it is only used by clients which do not send the ETag
+            final String ifNoneMatch = req.getHeader("If-None-Match");
+            if (ifNoneMatch != null ? etag.equals(ifNoneMatch) : req.getDateHeader("If-Modified-Since") >= lastModified / 1000 * 1000) {
+                rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        rsp.setContentType("application/json; charset=utf-8");
+        rsp.getOutputStream().write(DefectTrend.toJSON(DefectTrend.read(project), maxBuilds).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     public Graph getGraph() {
-        return new GraphImpl();
+        final long lastModified = DefectTrend.getLastModified(project);
+        return new GraphImpl(lastModified > 0 ? lastModified : -1, DefectTrend.getVersion(project));
     }
 
     private class GraphImpl extends Graph {
-        protected GraphImpl() {
-            super(-1, 600, 300); // no caching, because it doesn't deal with deleted builds
+        private final long timestamp;
+        private final String version;
+
+        /**
+         * @param timestamp time the trend of the job last changed, -1 for no caching
+         * @param version identifies the trend of the job, null for no caching
+         */
+        protected GraphImpl(long timestamp, String version) {
+            super(timestamp, DEFAULT_WIDTH, DEFAULT_HEIGHT);
+            this.timestamp = timestamp;
+            this.version = version;
+        }
+
+        /**
+         * Serves the image rendered for the same trend and size before when there is one, and answers with 304 when
+         * the browser already has it
+         */
+        @Override
+        public void doPng(StaplerRequest req, StaplerResponse rsp) throws IOException {
+            if (version == null || timestamp <= 0 || ChartUtil.awtProblemCause != null) {
+                super.doPng(req, rsp);
+                return;
+            }
+
+            final int width = getSize(req, "width", DEFAULT_WIDTH);
+            final int height = getSize(req, "height", DEFAULT_HEIGHT);
+            final String key = project.getFullName() + '@' + version + '/' + width + 'x' + height;
+            final String etag = '"' + Util.getDigestOf(key) + '"';
+
+            rsp.setHeader("ETag", etag);
+            if (etag.equals(req.getHeader("If-None-Match"))) {
+                rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            if (req.checkIfModified(timestamp, rsp)) {
+                return;
+            }
+
+            byte[] png = graphs.getIfPresent(key);
+            if (png == null) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ChartUtilities.writeChartAsPNG(out, createGraph(), width, height);
+                png = out.toByteArray();
+                graphs.put(key, png);
+            }
+
+            rsp.setContentType("image/png");
+            rsp.setContentLength(png.length);
+            rsp.getOutputStream().write(png);
         }
 
+        /**
+         * Reads the counts from the trend file of the job, so the builds are not loaded
+         */
         protected DataSetBuilder<String, ChartLabel> createDataSet() {
             DataSetBuilder<String, ChartLabel> data = new DataSetBuilder<String, ChartLabel>();
-            Run<?, ?> build = project.getLastCompletedBuild();
-            while(build != null) {
-                final List<CoverityBuildAction> actions = build.getActions(CoverityBuildAction.class);
-
-                for(CoverityBuildAction action : actions) {
-                    if(action != null && action.getDefects() != null && action.getGraphDisplayName() != null) {
-                        data.add(action.getDefects().size(), action.getGraphDisplayName(), new ChartLabel(build));
-                    }
+            final Map<Integer, ChartLabel> labels = new HashMap<Integer, ChartLabel>();
+            for(DefectTrend.Entry entry : DefectTrend.read(project)) {
+                ChartLabel label = labels.get(entry.getBuildNumber());
+                if(label == null) {
+                    label = new ChartLabel(project, entry);
+                    labels.put(entry.getBuildNumber(), label);
                 }
-                build = build.getPreviousBuild();
+                label.entries.add(entry);
+                data.add(entry.getDefectCount(), entry.getSeries(), label);
             }
             return data;
 
@@ -143,6 +310,15 @@ public class CoverityProjectAction implements Action {
         }
     }
 
+    private static int getSize(StaplerRequest req, String name, int defaultValue) {
+        try {
+            final String value = req.getParameter(name);
+            return value != null ? Math.max(1, Math.min(MAX_SIZE, Integer.parseInt(value))) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     private static class ChartItemRenderer extends StackedAreaRenderer2 {
         private final CategoryDataset ds;
 
@@ -169,10 +345,21 @@ public class CoverityProjectAction implements Action {
                                       int column) {
             ChartLabel label = (ChartLabel) dataset.getColumnKey(column);
             int defects = 0;
-            for(CoverityBuildAction a : label.build.getActions(CoverityBuildAction.class)) {
-                defects += a.getDefects().size();
+            int newDefects = 0;
+            int fixedDefects = 0;
+            boolean compared = false;
+            for(DefectTrend.Entry e : label.entries) {
+                defects += e.getDefectCount();
+                if(e.isCompared()) {
+                    compared = true;
+                    newDefects += e.getNewDefectCount();
+                    fixedDefects += e.getFixedDefectCount();
+                }
+            }
+            if(compared) {
+                return label.displayName + " has " + defects + " total defects, " + newDefects + " new and " + fixedDefects + " fixed";
             }
-            return label.build.getDisplayName() + " has " + defects + " total defects";
+            return label.displayName + " has " + defects + " total defects";
         }
 
         @Override
@@ -196,18 +383,25 @@ public class CoverityProjectAction implements Action {
     }
 
     private static class ChartLabel implements Comparable<ChartLabel> {
-        private Run build;
-
-        public ChartLabel(Run build) {
-            this.build = build;
+        private final Job<?, ?> job;
+        private final int number;
+        private final String displayName;
+        private final String builtOn;
+        private final List<DefectTrend.Entry> entries = new ArrayList<DefectTrend.Entry>();
+
+        public ChartLabel(Job<?, ?> job, DefectTrend.Entry entry) {
+            this.job = job;
+            this.number = entry.getBuildNumber();
+            this.displayName = entry.getDisplayName();
+            this.builtOn = entry.getBuiltOn();
         }
 
         public String getUrl() {
-            return Jenkins.getInstance().getRootUrl() + build.getUrl();
+            return Jenkins.getInstance().getRootUrl() + job.getUrl() + number + '/';
         }
 
         public int compareTo(ChartLabel that) {
-            return build.number - that.build.number;
+            return number - that.number;
         }
 
         @Override
@@ -216,7 +410,7 @@ public class CoverityProjectAction implements Action {
                 return false;
             }
             ChartLabel that = (ChartLabel) o;
-            return this.build == that.build;
+            return this.number == that.number;
         }
 
         public Color getColor() {
@@ -225,18 +419,15 @@ public class CoverityProjectAction implements Action {
 
         @Override
         public int hashCode() {
-            return build.getDisplayName().hashCode();
+            return number;
         }
 
         @Override
         public String toString() {
-            String l = build.getDisplayName();
+            String l = displayName;
 
-            if (build instanceof AbstractBuild) {
-                String s = ((AbstractBuild)build).getBuiltOnStr();
-                if(s != null)
-                    l += ' ' + s;
-            }
+            if(builtOn != null)
+                l += ' ' + builtOn;
             return l;
         }
 
@@ -99,6 +99,30 @@ public class CoverityPublisher extends Recorder {
      * Hide the chart to make page loads faster
      */
     private boolean hideChart;
+    /**
+     * Number of defects requested per page, null to use the global setting
+     */
+    private Integer defectsPageSize;
+    /**
+     * Maximum number of defects fetched after each build, null to use the global setting
+     */
+    private Integer maxDefects;
+    /**
+     * Time in minutes after which fetching defects is abandoned, null to use the global setting
+     */
+    private Integer fetchDefectsTimeBudget;
+    /**
+     * Should only the defects changed since the snapshot of the previous build be fetched?
+     */
+    private boolean fetchDefectsIncrementally;
+    /**
+     * Should only the number of matching defects be read after the build, and the defects fetched when they are viewed?
+     */
+    private boolean countDefectsOnly;
+    /**
+     * Should only defects which were not found by the previous build fail the build or mark it unstable?
+     */
+    private boolean onlyNewDefects;
 
     private TaOptionBlock taOptionBlock;
 
@@ -234,6 +258,60 @@ public class CoverityPublisher extends Recorder {
         return hideChart;
     }
 
+    @DataBoundSetter
+    public void setDefectsPageSize(Integer defectsPageSize){
+        this.defectsPageSize = defectsPageSize;
+    }
+
+    public Integer getDefectsPageSize() {
+        return defectsPageSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxDefects(Integer maxDefects){
+        this.maxDefects = maxDefects;
+    }
+
+    public Integer getMaxDefects() {
+        return maxDefects;
+    }
+
+    @DataBoundSetter
+    public void setFetchDefectsTimeBudget(Integer fetchDefectsTimeBudget){
+        this.fetchDefectsTimeBudget = fetchDefectsTimeBudget;
+    }
+
+    public Integer getFetchDefectsTimeBudget() {
+        return fetchDefectsTimeBudget;
+    }
+
+    @DataBoundSetter
+    public void setFetchDefectsIncrementally(boolean fetchDefectsIncrementally){
+        this.fetchDefectsIncrementally = fetchDefectsIncrementally;
+    }
+
+    public boolean getFetchDefectsIncrementally() {
+        return fetchDefectsIncrementally;
+    }
+
+    @DataBoundSetter
+    public void setCountDefectsOnly(boolean countDefectsOnly){
+        this.countDefectsOnly = countDefectsOnly;
+    }
+
+    public boolean getCountDefectsOnly() {
+        return countDefectsOnly;
+    }
+
+    @DataBoundSetter
+    public void setOnlyNewDefects(boolean onlyNewDefects){
+        this.onlyNewDefects = onlyNewDefects;
+    }
+
+    public boolean getOnlyNewDefects() {
+        return onlyNewDefects;
+    }
+
     @DataBoundSetter
     public void setUnstable(boolean unstable){
         this.unstable = unstable;
@@ -339,6 +417,21 @@ public class CoverityPublisher extends Recorder {
         private SSLConfigurations sslConfigurations;
         private CoverityToolInstallation[] installations = new CoverityToolInstallation[0];
 
+        /**
+         * Defaults for fetching defects, used when a job does not configure its own value
+         */
+        private Integer defectsPageSize;
+        private Integer maxDefects;
+        private Integer fetchDefectsTimeBudget;
+        /**
+         * Should the page size be adapted to the response time of Coverity Connect?
+         */
+        private boolean adaptivePageSize;
+        /**
+         * Should defects fetched for a snapshot be shared with other jobs reading the same stream with the same filters?
+         */
+        private boolean shareDefects;
+
         public DescriptorImpl() {
             super(CoverityPublisher.class);
             load();
@@ -425,6 +518,46 @@ public class CoverityPublisher extends Recorder {
             }
         }
 
+        public Integer getDefectsPageSize() {
+            return defectsPageSize;
+        }
+
+        public void setDefectsPageSize(Integer defectsPageSize) {
+            this.defectsPageSize = defectsPageSize;
+        }
+
+        public Integer getMaxDefects() {
+            return maxDefects;
+        }
+
+        public void setMaxDefects(Integer maxDefects) {
+            this.maxDefects = maxDefects;
+        }
+
+        public Integer getFetchDefectsTimeBudget() {
+            return fetchDefectsTimeBudget;
+        }
+
+        public void setFetchDefectsTimeBudget(Integer fetchDefectsTimeBudget) {
+            this.fetchDefectsTimeBudget = fetchDefectsTimeBudget;
+        }
+
+        public boolean isAdaptivePageSize() {
+            return adaptivePageSize;
+        }
+
+        public void setAdaptivePageSize(boolean adaptivePageSize) {
+            this.adaptivePageSize = adaptivePageSize;
+        }
+
+        public boolean isShareDefects() {
+            return shareDefects;
+        }
+
+        public void setShareDefects(boolean shareDefects) {
+            this.shareDefects = shareDefects;
+        }
+
         public List<CIMInstance> getInstances() {
             return instances;
         }
@@ -499,6 +632,18 @@ public class CoverityPublisher extends Recorder {
             }
         }
 
+        public FormValidation doCheckDefectsPageSize(@QueryParameter String value) {
+            return StringUtils.isBlank(value) ? FormValidation.ok() : FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckMaxDefects(@QueryParameter String value) {
+            return StringUtils.isBlank(value) ? FormValidation.ok() : FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckFetchDefectsTimeBudget(@QueryParameter String value) {
+            return StringUtils.isBlank(value) ? FormValidation.ok() : FormValidation.validatePositiveInteger(value);
+        }
+
         public FormValidation doCheckDate(@QueryParameter String date) {
             try {
                 if(!StringUtils.isEmpty(date.trim())) {
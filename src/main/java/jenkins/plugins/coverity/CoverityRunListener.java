@@ -25,13 +25,16 @@ import java.io.IOException;
 
 /**
  * CoverityRunListener injects the Coverity pre-build check into all builds where Coverity build/analysis/commit is
- * enabled. The check runs before code is checked out.
+ * enabled. The check runs before code is checked out. It also keeps the {@link DefectTrend} and the {@link CidIndex} of
+ * the job up to date as builds complete and are deleted.
  */
 @Extension
 public class CoverityRunListener extends RunListener<Run> {
     @Override
     public void onCompleted(Run run, @Nonnull TaskListener listener) {
         super.onCompleted(run, listener);
+        DefectTrend.record(run);
+        CidIndex.record(run);
     }
 
     @Override
@@ -77,5 +80,7 @@ public class CoverityRunListener extends RunListener<Run> {
     @Override
     public void onDeleted(Run run) {
         super.onDeleted(run);
+        DefectTrend.remove(run);
+        CidIndex.remove(run);
     }
 }
@@ -82,6 +82,14 @@ public class CoverityViewResultsDescriptor extends BuildStepDescriptor<Publisher
         return result;
     }
 
+    public FormValidation doCheckIssueThreshold(@QueryParameter String value) {
+        return StringUtils.isBlank(value) ? FormValidation.ok() : FormValidation.validateNonNegativeInteger(value);
+    }
+
+    public FormValidation doCheckSampleSize(@QueryParameter String value) {
+        return StringUtils.isBlank(value) ? FormValidation.ok() : FormValidation.validateNonNegativeInteger(value);
+    }
+
     /**
      * Checks the instance, view and project. To ensure valid configuration.
      * First, this check that the connectInstance string value is a configured global instance, then it checks that instance is valid.
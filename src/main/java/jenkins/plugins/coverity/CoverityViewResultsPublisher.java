@@ -32,12 +32,29 @@ import jenkins.plugins.coverity.ws.ViewIssuesReader;
 import jenkins.tasks.SimpleBuildStep;
 
 public class CoverityViewResultsPublisher extends Recorder implements SimpleBuildStep {
+    /**
+     * Number of issues kept for the build when only the issue count is needed
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+
     private String connectInstance;
     private String connectView;
     private String projectId;
     private boolean failPipeline;
     private boolean unstable;
     private boolean abortPipeline;
+    /**
+     * Number of issues the view may contain before the pipeline is aborted, failed or marked unstable, null for none
+     */
+    private Integer issueThreshold;
+    /**
+     * Should only the number of issues and a sample of them be read, instead of every issue in the view?
+     */
+    private boolean gateOnly;
+    /**
+     * Number of issues kept when only the number of issues is read, null for the default
+     */
+    private Integer sampleSize;
 
     @DataBoundConstructor
     public CoverityViewResultsPublisher(String connectInstance, String connectView, String projectId) {
@@ -51,6 +68,13 @@ public class CoverityViewResultsPublisher extends Recorder implements SimpleBuil
 
     @Override
     public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher, @Nonnull TaskListener listener) throws IOException {
+        publish(run, listener);
+    }
+
+    /**
+     * Reads the issues of the view and sets the result of the run, without needing a workspace
+     */
+    public void publish(@Nonnull Run<?, ?> run, @Nonnull TaskListener listener) throws IOException {
         final PrintStream logger = listener.getLogger();
         logger.println("[Coverity] Publish Coverity View Results { "+
             "connectInstance:'" + connectInstance + "', " +
@@ -76,13 +100,17 @@ public class CoverityViewResultsPublisher extends Recorder implements SimpleBuil
             ViewIssuesReader reader = new ViewIssuesReader(run, listener.getLogger(), this);
             reader.getIssuesFromConnectView();
             final CoverityBuildAction buildAction = run.getAction(CoverityBuildAction.class);
-            if (abortPipeline && buildAction.getDefects().size() > 0) {
+            final boolean exceeded = buildAction.getDefectCount() > getEffectiveIssueThreshold();
+            if (exceeded && getEffectiveIssueThreshold() > 0) {
+                logger.println("[Coverity] " + buildAction.getDefectCount() + " Coverity issues were found, more than the threshold of " + getEffectiveIssueThreshold() + ".");
+            }
+            if (abortPipeline && exceeded) {
                 logger.println("[Coverity] Coverity issues were found and abortPipeline was set to true, throwing abort exception.");
                 throw new AbortException("Coverity issues were found");
-            } else if (failPipeline && buildAction.getDefects().size() > 0) {
+            } else if (failPipeline && exceeded) {
                 logger.println("[Coverity] Coverity issues were found and failPipeline was set to true, the pipeline result will be marked as FAILURE.");
                 run.setResult(Result.FAILURE);
-            } else if (unstable && buildAction.getDefects().size() > 0) {
+            } else if (unstable && exceeded) {
                 logger.println("[Coverity] Coverity issues were found and unstable was set to true, the pipeline result will be marked as UNSTABLE.");
                 run.setResult(Result.UNSTABLE);
             }
@@ -162,4 +190,39 @@ public class CoverityViewResultsPublisher extends Recorder implements SimpleBuil
     public boolean isAbortPipeline() {
         return abortPipeline;
     }
+
+    public Integer getIssueThreshold() {
+        return issueThreshold;
+    }
+
+    @DataBoundSetter
+    public void setIssueThreshold(Integer issueThreshold) {
+        this.issueThreshold = issueThreshold;
+    }
+
+    public int getEffectiveIssueThreshold() {
+        return issueThreshold != null && issueThreshold > 0 ? issueThreshold : 0;
+    }
+
+    public boolean isGateOnly() {
+        return gateOnly;
+    }
+
+    @DataBoundSetter
+    public void setGateOnly(boolean gateOnly) {
+        this.gateOnly = gateOnly;
+    }
+
+    public Integer getSampleSize() {
+        return sampleSize;
+    }
+
+    @DataBoundSetter
+    public void setSampleSize(Integer sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public int getEffectiveSampleSize() {
+        return sampleSize != null && sampleSize >= 0 ? sampleSize : DEFAULT_SAMPLE_SIZE;
+    }
 }
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+import com.google.common.collect.ImmutableSet;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+/**
+ * Pipeline step which publishes the issues of a Coverity Connect view like {@link CoverityViewResultsPublisher}, but
+ * reads the view on a thread of the Jenkins controller. The step needs no workspace, so when it is used outside a
+ * node block it does not hold an executor while the view is paged through. Aborting the run stops reading the view.
+ */
+public class CoverityViewResultsStep extends Step {
+    /**
+     * Maximum number of steps reading views at the same time, further steps wait for one of them to finish
+     */
+    public static final int MAX_CONCURRENT_READS = Integer.getInteger(CoverityViewResultsStep.class.getName() + ".maxConcurrentReads", 4);
+
+    private static final ExecutorService executor = createExecutor();
+
+    private final String connectInstance;
+    private final String connectView;
+    private final String projectId;
+    private boolean failPipeline;
+    private boolean unstable;
+    private boolean abortPipeline;
+    private Integer issueThreshold;
+    private boolean gateOnly;
+    private Integer sampleSize;
+
+    @DataBoundConstructor
+    public CoverityViewResultsStep(String connectInstance, String connectView, String projectId) {
+        this.connectInstance = Util.fixNull(connectInstance);
+        this.connectView = Util.fixNull(connectView);
+        this.projectId = projectId;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, toPublisher());
+    }
+
+    /**
+     * The publisher doing the work of the step
+     */
+    CoverityViewResultsPublisher toPublisher() {
+        final CoverityViewResultsPublisher publisher = new CoverityViewResultsPublisher(connectInstance, connectView, projectId);
+        publisher.setFailPipeline(failPipeline);
+        publisher.setUnstable(unstable);
+        publisher.setAbortPipeline(abortPipeline);
+        publisher.setIssueThreshold(issueThreshold);
+        publisher.setGateOnly(gateOnly);
+        publisher.setSampleSize(sampleSize);
+        return publisher;
+    }
+
+    public String getConnectInstance() {
+        return connectInstance;
+    }
+
+    public String getConnectView() {
+        return connectView;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public boolean isFailPipeline() {
+        return failPipeline;
+    }
+
+    @DataBoundSetter
+    public void setFailPipeline(boolean failPipeline) {
+        this.failPipeline = failPipeline;
+    }
+
+    public boolean isUnstable() {
+        return unstable;
+    }
+
+    @DataBoundSetter
+    public void setUnstable(boolean unstable) {
+        this.unstable = unstable;
+    }
+
+    public boolean isAbortPipeline() {
+        return abortPipeline;
+    }
+
+    @DataBoundSetter
+    public void setAbortPipeline(boolean abortPipeline) {
+        this.abortPipeline = abortPipeline;
+    }
+
+    public Integer getIssueThreshold() {
+        return issueThreshold;
+    }
+
+    @DataBoundSetter
+    public void setIssueThreshold(Integer issueThreshold) {
+        this.issueThreshold = issueThreshold;
+    }
+
+    public boolean isGateOnly() {
+        return gateOnly;
+    }
+
+    @DataBoundSetter
+    public void setGateOnly(boolean gateOnly) {
+        this.gateOnly = gateOnly;
+    }
+
+    public Integer getSampleSize() {
+        return sampleSize;
+    }
+
+    @DataBoundSetter
+    public void setSampleSize(Integer sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    private static ExecutorService createExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENT_READS, MAX_CONCURRENT_READS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new NamingThreadFactory(new DaemonThreadFactory(), "Coverity view results step"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs the publisher on the step's thread pool and completes the step when it is done. The step is completed
+     * once, by whichever of the publisher, stop or a restart comes first.
+     */
+    public static class Execution extends StepExecution {
+        private static final long serialVersionUID = 1L;
+
+        // the view is read again from the start when the step is started again, nothing needs to be kept
+        private final transient CoverityViewResultsPublisher publisher;
+        private transient volatile Future<?> task;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Execution(StepContext context, CoverityViewResultsPublisher publisher) {
+            super(context);
+            this.publisher = publisher;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            final Run<?, ?> run = getContext().get(Run.class);
+            final TaskListener listener = getContext().get(TaskListener.class);
+
+            task = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    final Thread thread = Thread.currentThread();
+                    final ClassLoader cl = thread.getContextClassLoader();
+                    // the web service clients load their providers through the context class loader
+                    thread.setContextClassLoader(CoverityViewResultsStep.class.getClassLoader());
+                    try {
+                        listener.getLogger().println("[Coverity] Reading Coverity view '" + publisher.getConnectView() +
+                            "' of project '" + publisher.getProjectId() + "' without an executor");
+                        publisher.publish(run, listener);
+                        listener.getLogger().println("[Coverity] Finished reading Coverity view '" + publisher.getConnectView() + "'");
+                        succeed();
+                    } catch (Throwable t) {
+                        fail(t);
+                    } finally {
+                        thread.setContextClassLoader(cl);
+                    }
+                }
+            });
+            return false;
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            final Future<?> task = this.task;
+            if (task != null) {
+                task.cancel(true);
+            }
+            if (!completed.get()) {
+                getContext().get(TaskListener.class).getLogger().println(
+                    "[Coverity] Stopped reading Coverity view '" + publisher.getConnectView() + "': " + cause);
+            }
+            fail(cause);
+        }
+
+        @Override
+        public void onResume() {
+            fail(new AbortException("Publishing Coverity View Results was interrupted by a restart of Jenkins"));
+        }
+
+        private void succeed() {
+            if (completed.compareAndSet(false, true)) {
+                getContext().onSuccess(null);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if (completed.compareAndSet(false, true)) {
+                getContext().onFailure(cause);
+            }
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.<Class<?>>of(Run.class, TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "coverityViewResults";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Publish Coverity View Results without an executor";
+        }
+
+        private CoverityViewResultsDescriptor getPublisherDescriptor() {
+            return Jenkins.getInstance().getDescriptorByType(CoverityViewResultsDescriptor.class);
+        }
+
+        public ListBoxModel doFillConnectInstanceItems() {
+            return getPublisherDescriptor().doFillConnectInstanceItems();
+        }
+
+        public FormValidation doCheckIssueThreshold(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckIssueThreshold(value);
+        }
+
+        public FormValidation doCheckSampleSize(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckSampleSize(value);
+        }
+
+        public FormValidation doCheckViews(@QueryParameter String connectInstance, @QueryParameter String projectId, @QueryParameter String connectView) {
+            return getPublisherDescriptor().doCheckViews(connectInstance, projectId, connectView);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.util.Arrays;
+
+/**
+ * The CIDs which appeared and disappeared between two builds, computed by merging the sorted CID sets of both builds
+ * in a single pass.
+ */
+public final class DefectDiff {
+    private final long[] newCids;
+    private final long[] fixedCids;
+    private final int unchangedCount;
+
+    private DefectDiff(long[] newCids, long[] fixedCids, int unchangedCount) {
+        this.newCids = newCids;
+        this.fixedCids = fixedCids;
+        this.unchangedCount = unchangedCount;
+    }
+
+    /**
+     * @param previous distinct CIDs of the previous build in ascending order
+     * @param current distinct CIDs of the current build in ascending order
+     */
+    public static DefectDiff compute(long[] previous, long[] current) {
+        final long[] newCids = new long[current.length];
+        final long[] fixedCids = new long[previous.length];
+        int newCount = 0;
+        int fixedCount = 0;
+        int unchangedCount = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < previous.length && j < current.length) {
+            if (previous[i] < current[j]) {
+                fixedCids[fixedCount++] = previous[i++];
+            } else if (previous[i] > current[j]) {
+                newCids[newCount++] = current[j++];
+            } else {
+                unchangedCount++;
+                i++;
+                j++;
+            }
+        }
+        while (i < previous.length) {
+            fixedCids[fixedCount++] = previous[i++];
+        }
+        while (j < current.length) {
+            newCids[newCount++] = current[j++];
+        }
+
+        return new DefectDiff(Arrays.copyOf(newCids, newCount), Arrays.copyOf(fixedCids, fixedCount), unchangedCount);
+    }
+
+    /**
+     * CIDs found in the current build but not in the previous one, in ascending order
+     */
+    public long[] getNewCids() {
+        return newCids.clone();
+    }
+
+    /**
+     * CIDs found in the previous build but not in the current one, in ascending order
+     */
+    public long[] getFixedCids() {
+        return fixedCids.clone();
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+}
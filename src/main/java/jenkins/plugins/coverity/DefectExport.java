@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Writes the defects of a build as newline delimited JSON or CSV, one defect at a time, optionally keeping only some
+ * checkers and components. Defects kept in a {@link DefectTable} or read from a defect file are filtered on their
+ * columns, so only the defects which are written are created.
+ */
+public class DefectExport {
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Returns the format with the given name, NDJSON when there is no name and null when it is unknown
+         */
+        public static Format parse(String value) {
+            if (value == null) {
+                return NDJSON;
+            }
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String[] COLUMNS = {"cid", "checker", "function", "file", "component", "url"};
+
+    private final Format format;
+    private final Set<String> checkers;
+    private final Set<String> components;
+
+    /**
+     * @param checkers checker names to keep, null or empty to keep all
+     * @param components component names to keep, null or empty to keep all
+     */
+    public DefectExport(Format format, String[] checkers, String[] components) {
+        this.format = format;
+        this.checkers = toSet(checkers);
+        this.components = toSet(components);
+    }
+
+    private static Set<String> toSet(String[] values) {
+        if (values == null || values.length == 0) {
+            return Collections.emptySet();
+        }
+        final Set<String> set = new HashSet<>();
+        Collections.addAll(set, values);
+        return set;
+    }
+
+    /**
+     * Writes the matching defects
+     *
+     * @param urlPrefix link to a defect in Coverity Connect without the CID, or null when there is no link
+     */
+    public void write(List<CoverityDefect> defects, String urlPrefix, Writer out) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvRow(out, COLUMNS);
+        }
+
+        final DefectTable table = defects instanceof DefectTable ? (DefectTable)defects : null;
+        for (int i = 0; i < defects.size(); i++) {
+            if (table != null && !matches(table.getCheckerName(i), table.getComponentName(i))) {
+                continue;
+            }
+            final CoverityDefect defect = defects.get(i);
+            if (table == null && !matches(defect.getCheckerName(), defect.getComponentName())) {
+                continue;
+            }
+
+            writeDefect(defect, urlPrefix, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the matching defects as they are read from a defect file
+     *
+     * @param urlPrefix link to a defect in Coverity Connect without the CID, or null when there is no link
+     */
+    public void write(DefectTable.Rows rows, String urlPrefix, Writer out) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvRow(out, COLUMNS);
+        }
+
+        while (rows.next()) {
+            if (matches(rows.getCheckerName(), rows.getComponentName())) {
+                writeDefect(rows.get(), urlPrefix, out);
+            }
+        }
+        out.flush();
+    }
+
+    private void writeDefect(CoverityDefect defect, String urlPrefix, Writer out) throws IOException {
+        final String url = urlPrefix != null && defect.getCid() != null ? urlPrefix + defect.getCid() : null;
+        if (format == Format.CSV) {
+            writeCsvRow(out, defect.getCid() != null ? defect.getCid().toString() : null, defect.getCheckerName(),
+                defect.getFunctionDisplayName(), defect.getFilePathname(), defect.getComponentName(), url);
+        } else {
+            final JSONObject row = new JSONObject();
+            row.put("cid", defect.getCid());
+            row.put("checker", defect.getCheckerName());
+            row.put("function", defect.getFunctionDisplayName());
+            row.put("file", defect.getFilePathname());
+            row.put("component", defect.getComponentName());
+            if (url != null) {
+                row.put("url", url);
+            }
+            out.write(row.toString());
+            out.write('\n');
+        }
+    }
+
+    private boolean matches(String checker, String component) {
+        return (checkers.isEmpty() || checkers.contains(checker)) && (components.isEmpty() || components.contains(component));
+    }
+
+    private static void writeCsvRow(Writer out, String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            final String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+        out.write("\r\n");
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes a list of defects as a compressed binary file, which is much smaller and faster to read than the
+ * same list in XML. The file holds the format version followed by a {@link DefectTable}.
+ */
+public final class DefectFile {
+    private static final int FORMAT_VERSION = 1;
+
+    private DefectFile() {
+    }
+
+    /**
+     * Writes the defects to a temporary file which then replaces the file, so readers never see a partial file
+     */
+    public static void write(File file, List<CoverityDefect> defects) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(FORMAT_VERSION);
+            DefectTable.of(defects).writeTo(out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    public static DefectTable read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version + " of " + file);
+            }
+            return DefectTable.readFrom(in);
+        }
+    }
+
+    /**
+     * Opens the file to read its defects one at a time. The caller closes the rows.
+     */
+    public static DefectTable.Rows readRows(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version + " of " + file);
+            }
+            return new DefectTable.Rows(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -232,6 +233,31 @@ public class DefectFilters {
         return null;
     }
 
+    /**
+     * Digest of the filters sent to Coverity Connect, which changes whenever the matching defects may change
+     */
+    public String getDigest() {
+        StringBuilder filters = new StringBuilder();
+        appendDigestEntry(filters, "actions", actions);
+        appendDigestEntry(filters, "classifications", classifications);
+        appendDigestEntry(filters, "severities", severities);
+        appendDigestEntry(filters, "impacts", impacts);
+        appendDigestEntry(filters, "components", components);
+        appendDigestEntry(filters, "checkers", checkers);
+        filters.append("cutOffDate=").append(getCutOffDate()).append('\n');
+        return Util.getDigestOf(filters.toString());
+    }
+
+    private static void appendDigestEntry(StringBuilder filters, String name, List<String> values) {
+        filters.append(name).append('=');
+        if (values != null) {
+            List<String> sortedValues = new ArrayList<>(values);
+            Collections.sort(sortedValues);
+            filters.append(sortedValues);
+        }
+        filters.append('\n');
+    }
+
     public MergedDefectFilterSpecDataObj ToFilterSpecDataObj(){
         MergedDefectFilterSpecDataObj filterSpecDataObj = new MergedDefectFilterSpecDataObj();
         if (actions != null && actions.size() > 0) {
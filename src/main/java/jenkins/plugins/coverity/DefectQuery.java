@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+import org.apache.commons.lang.StringUtils;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Selects a sorted and filtered slice of the defects of a build, for the defects page to load a page at a time.
+ */
+public class DefectQuery {
+    /**
+     * Largest number of defects returned at once
+     */
+    public static final int MAX_COUNT = 1000;
+
+    public enum SortKey {
+        CID, CHECKER, FUNCTION, FILE;
+
+        static SortKey parse(String value) {
+            for (SortKey key : values()) {
+                if (key.name().equalsIgnoreCase(value)) {
+                    return key;
+                }
+            }
+            return CID;
+        }
+    }
+
+    private final int start;
+    private final int count;
+    private final SortKey sortKey;
+    private final boolean descending;
+    private final String filter;
+
+    public DefectQuery(int start, int count, String sort, String order, String filter) {
+        this.start = Math.max(0, start);
+        this.count = Math.max(0, Math.min(MAX_COUNT, count));
+        this.sortKey = SortKey.parse(sort);
+        this.descending = "desc".equalsIgnoreCase(order);
+        this.filter = StringUtils.isNotBlank(filter) ? filter.trim().toLowerCase(Locale.ENGLISH) : null;
+    }
+
+    /**
+     * Returns the defects matching the filter, sorted. The defects are sorted as row indexes into a {@link DefectTable},
+     * so no defect is created until it is read from the selection.
+     */
+    public Selection select(List<CoverityDefect> defects) {
+        final DefectTable table = DefectTable.of(defects);
+        final int[] matching = new int[table.size()];
+        int size = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (matches(table, row)) {
+                matching[size++] = row;
+            }
+        }
+        final int[] rows = sort(Arrays.copyOf(matching, size), new RowOrder(table, sortKey, descending));
+        return new Selection(defects, table, sortKey, descending, filter, rows);
+    }
+
+    /**
+     * Whether the selection was made from the same defects with the same sort order and filter as this query would
+     */
+    public boolean isSelectedBy(Selection selection, List<CoverityDefect> defects) {
+        return selection.defects == defects && selection.sortKey == sortKey && selection.descending == descending &&
+            (filter != null ? filter.equals(selection.filter) : selection.filter == null);
+    }
+
+    /**
+     * Returns the requested slice of the selected defects together with the number of defects matching the filter
+     *
+     * @param urlPrefix link to a defect in Coverity Connect without the CID, or null when there is no link
+     */
+    public JSONObject toJSON(List<CoverityDefect> defects, String urlPrefix) {
+        return toJSON(select(defects), urlPrefix);
+    }
+
+    /**
+     * Returns the requested slice of defects selected before, for example by an earlier query for another slice
+     *
+     * @param urlPrefix link to a defect in Coverity Connect without the CID, or null when there is no link
+     */
+    public JSONObject toJSON(Selection selected, String urlPrefix) {
+        final int end = Math.min(selected.size(), start + count);
+
+        final JSONArray rows = new JSONArray();
+        for (int i = start; i < end; i++) {
+            final CoverityDefect defect = selected.get(i);
+            final JSONObject row = new JSONObject();
+            row.put("cid", defect.getCid());
+            row.put("checker", defect.getCheckerName());
+            row.put("function", defect.getFunctionDisplayName());
+            row.put("file", defect.getFilePathname());
+            if (urlPrefix != null && defect.getCid() != null) {
+                row.put("url", urlPrefix + defect.getCid());
+            }
+            rows.add(row);
+        }
+
+        final JSONObject result = new JSONObject();
+        result.put("total", selected.getTotal());
+        result.put("matching", selected.size());
+        result.put("start", start);
+        result.put("defects", rows);
+        return result;
+    }
+
+    private boolean matches(DefectTable table, int row) {
+        if (filter == null) {
+            return true;
+        }
+        final Long cid = table.getCid(row);
+        return contains(cid != null ? cid.toString() : null) ||
+            contains(table.getCheckerName(row)) ||
+            contains(table.getFunctionDisplayName(row)) ||
+            contains(table.getFilePathname(row));
+    }
+
+    private boolean contains(String value) {
+        return value != null && value.toLowerCase(Locale.ENGLISH).contains(filter);
+    }
+
+    /**
+     * Sorts the rows with a stable merge sort, as the JDK only sorts primitive arrays in their natural order
+     */
+    private static int[] sort(int[] rows, RowOrder order) {
+        int[] from = rows;
+        int[] to = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int low = 0; low < rows.length; low += 2 * width) {
+                final int middle = Math.min(low + width, rows.length);
+                final int high = Math.min(low + 2 * width, rows.length);
+                int left = low;
+                int right = middle;
+                int i = low;
+                while (left < middle && right < high) {
+                    to[i++] = order.compare(from[right], from[left]) < 0 ? from[right++] : from[left++];
+                }
+                while (left < middle) {
+                    to[i++] = from[left++];
+                }
+                while (right < high) {
+                    to[i++] = from[right++];
+                }
+            }
+            final int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        return from;
+    }
+
+    /**
+     * Orders the rows of a table by a column and then by CID. The values compared are read from the table once.
+     */
+    private static final class RowOrder {
+        private final long[] cids;
+        private final String[] keys;
+        private final boolean descending;
+
+        RowOrder(DefectTable table, SortKey sortKey, boolean descending) {
+            this.descending = descending;
+            cids = new long[table.size()];
+            keys = sortKey != SortKey.CID ? new String[table.size()] : null;
+            for (int row = 0; row < table.size(); row++) {
+                final Long cid = table.getCid(row);
+                // defects without a CID come first, like null strings
+                cids[row] = cid != null ? cid : Long.MIN_VALUE;
+                if (keys != null) {
+                    keys[row] = getKey(table, row, sortKey);
+                }
+            }
+        }
+
+        private static String getKey(DefectTable table, int row, SortKey sortKey) {
+            switch (sortKey) {
+                case CHECKER:
+                    return table.getCheckerName(row);
+                case FUNCTION:
+                    return table.getFunctionDisplayName(row);
+                default:
+                    return table.getFilePathname(row);
+            }
+        }
+
+        int compare(int a, int b) {
+            int result = keys != null ? compareStrings(keys[a], keys[b]) : 0;
+            if (result == 0) {
+                result = cids[a] < cids[b] ? -1 : (cids[a] == cids[b] ? 0 : 1);
+            }
+            return descending ? -result : result;
+        }
+
+        private static int compareStrings(String a, String b) {
+            // the strings of a table are shared, so equal strings are usually the same string
+            if (a == b) {
+                return 0;
+            }
+            if (a == null || b == null) {
+                return a == null ? -1 : 1;
+            }
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * The defects matching a filter in sorted order, kept by the build action so the pages of the defects page are
+     * served without filtering and sorting the defects again
+     */
+    public static final class Selection extends AbstractList<CoverityDefect> implements RandomAccess {
+        private final List<CoverityDefect> defects;
+        private final DefectTable table;
+        private final SortKey sortKey;
+        private final boolean descending;
+        private final String filter;
+        private final int[] rows;
+
+        private Selection(List<CoverityDefect> defects, DefectTable table, SortKey sortKey, boolean descending, String filter,
+                          int[] rows) {
+            this.defects = defects;
+            this.table = table;
+            this.sortKey = sortKey;
+            this.descending = descending;
+            this.filter = filter;
+            this.rows = rows;
+        }
+
+        @Override
+        public CoverityDefect get(int index) {
+            return table.get(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * Number of defects the selection was made from
+         */
+        public int getTotal() {
+            return table.size();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * An immutable list of defects stored by column. The CIDs are kept in a long array, the checker names, function names,
+ * file paths and component names as indexes into a table of distinct strings. The strings are shared with every other
+ * table, so builds of a job which report the same checkers, functions and files keep a single copy of each. Elements
+ * are created when they are read and can be dropped right after use.
+ */
+public final class DefectTable extends AbstractList<CoverityDefect> implements RandomAccess {
+    /**
+     * Maximum number of defects read from a table, a larger count is taken for a corrupt file
+     */
+    public static final int MAX_ROWS = Integer.getInteger(DefectTable.class.getName() + ".maxRows", 10000000);
+
+    private static final Interner<String> strings = Interners.newWeakInterner();
+
+    private static final long NO_CID = Long.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    private final long[] cids;
+    private final int[] checkerNames;
+    private final int[] functionDisplayNames;
+    private final int[] filePathnames;
+    private final int[] componentNames;
+    private final String[] dictionary;
+
+    private DefectTable(long[] cids, int[] checkerNames, int[] functionDisplayNames, int[] filePathnames, int[] componentNames,
+                        String[] dictionary) {
+        this.cids = cids;
+        this.checkerNames = checkerNames;
+        this.functionDisplayNames = functionDisplayNames;
+        this.filePathnames = filePathnames;
+        this.componentNames = componentNames;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the defects as a table, or the list itself if it already is one
+     */
+    public static DefectTable of(List<CoverityDefect> defects) {
+        if (defects instanceof DefectTable) {
+            return (DefectTable)defects;
+        }
+
+        final Builder builder = new Builder(defects.size());
+        for (CoverityDefect defect : defects) {
+            builder.add(defect);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public CoverityDefect get(int index) {
+        if (index < 0 || index >= cids.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + cids.length);
+        }
+        return new CoverityDefect(cids[index] != NO_CID ? Long.valueOf(cids[index]) : null,
+            lookup(checkerNames[index]), lookup(functionDisplayNames[index]), lookup(filePathnames[index]),
+            lookup(componentNames[index]));
+    }
+
+    @Override
+    public int size() {
+        return cids.length;
+    }
+
+    /**
+     * Returns the CID of a defect without creating the defect
+     */
+    public Long getCid(int index) {
+        return cids[index] != NO_CID ? Long.valueOf(cids[index]) : null;
+    }
+
+    /**
+     * Returns the checker name of a defect without creating the defect
+     */
+    public String getCheckerName(int index) {
+        return lookup(checkerNames[index]);
+    }
+
+    /**
+     * Returns the function name of a defect without creating the defect
+     */
+    public String getFunctionDisplayName(int index) {
+        return lookup(functionDisplayNames[index]);
+    }
+
+    /**
+     * Returns the file path of a defect without creating the defect
+     */
+    public String getFilePathname(int index) {
+        return lookup(filePathnames[index]);
+    }
+
+    /**
+     * Returns the component name of a defect without creating the defect
+     */
+    public String getComponentName(int index) {
+        return lookup(componentNames[index]);
+    }
+
+    /**
+     * Returns the distinct CIDs of the defects in ascending order
+     */
+    public long[] getSortedCids() {
+        final long[] sorted = new long[cids.length];
+        int count = 0;
+        for (long cid : cids) {
+            if (cid != NO_CID) {
+                sorted[count++] = cid;
+            }
+        }
+        Arrays.sort(sorted, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || sorted[distinct - 1] != sorted[i]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Number of distinct strings used by the defects
+     */
+    public int getDictionarySize() {
+        return dictionary.length;
+    }
+
+    private String lookup(int index) {
+        return index != NO_STRING ? dictionary[index] : null;
+    }
+
+    /**
+     * Writes the string table followed by the columns
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(dictionary.length);
+        for (String value : dictionary) {
+            writeString(out, value);
+        }
+        out.writeInt(cids.length);
+        for (int i = 0; i < cids.length; i++) {
+            out.writeLong(cids[i]);
+            out.writeInt(checkerNames[i]);
+            out.writeInt(functionDisplayNames[i]);
+            out.writeInt(filePathnames[i]);
+            out.writeInt(componentNames[i]);
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}
+     */
+    public static DefectTable readFrom(DataInputStream in) throws IOException {
+        final String[] dictionary = readDictionary(in);
+        final int count = readCount(in, dictionary);
+        final long[] cids = new long[count];
+        final int[] checkerNames = new int[count];
+        final int[] functionDisplayNames = new int[count];
+        final int[] filePathnames = new int[count];
+        final int[] componentNames = new int[count];
+        for (int i = 0; i < count; i++) {
+            cids[i] = in.readLong();
+            checkerNames[i] = checkIndex(in.readInt(), dictionary);
+            functionDisplayNames[i] = checkIndex(in.readInt(), dictionary);
+            filePathnames[i] = checkIndex(in.readInt(), dictionary);
+            componentNames[i] = checkIndex(in.readInt(), dictionary);
+        }
+        return new DefectTable(cids, checkerNames, functionDisplayNames, filePathnames, componentNames, dictionary);
+    }
+
+    private static String[] readDictionary(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        // every string is used by one of the four string columns of a defect
+        if (size < 0 || size > 4L * MAX_ROWS) {
+            throw new IOException("Invalid string count " + size);
+        }
+        final String[] dictionary = new String[size];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = strings.intern(readString(in));
+        }
+        return dictionary;
+    }
+
+    private static int readCount(DataInputStream in, String[] dictionary) throws IOException {
+        final int count = in.readInt();
+        if (count < 0 || count > MAX_ROWS || dictionary.length > 4L * count) {
+            throw new IOException("Invalid defect count " + count + " for " + dictionary.length + " strings");
+        }
+        return count;
+    }
+
+    /**
+     * Writes the string as its length in UTF-8 bytes followed by the bytes. Unlike {@link DataOutputStream#writeUTF},
+     * this is not limited to strings of less than 64 KB.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkIndex(int index, String[] dictionary) throws IOException {
+        if (index < NO_STRING || index >= dictionary.length) {
+            throw new IOException("Invalid string index " + index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the defects written by {@link #writeTo} one at a time, so only the strings are kept in memory while the
+     * defects are read. Closing the rows closes the stream.
+     */
+    public static final class Rows implements Closeable {
+        private final DataInputStream in;
+        private final String[] dictionary;
+        private int remaining;
+        private long cid;
+        private int checkerName;
+        private int functionDisplayName;
+        private int filePathname;
+        private int componentName;
+
+        Rows(DataInputStream in) throws IOException {
+            this.in = in;
+            this.dictionary = readDictionary(in);
+            this.remaining = readCount(in, dictionary);
+        }
+
+        /**
+         * Reads the next defect, returns false when there are no more
+         */
+        public boolean next() throws IOException {
+            if (remaining <= 0) {
+                return false;
+            }
+            cid = in.readLong();
+            checkerName = checkIndex(in.readInt(), dictionary);
+            functionDisplayName = checkIndex(in.readInt(), dictionary);
+            filePathname = checkIndex(in.readInt(), dictionary);
+            componentName = checkIndex(in.readInt(), dictionary);
+            remaining--;
+            return true;
+        }
+
+        /**
+         * Returns the checker name of the current defect without creating the defect
+         */
+        public String getCheckerName() {
+            return checkerName != NO_STRING ? dictionary[checkerName] : null;
+        }
+
+        /**
+         * Returns the component name of the current defect without creating the defect
+         */
+        public String getComponentName() {
+            return componentName != NO_STRING ? dictionary[componentName] : null;
+        }
+
+        public CoverityDefect get() {
+            return new CoverityDefect(cid != NO_CID ? Long.valueOf(cid) : null, getCheckerName(),
+                functionDisplayName != NO_STRING ? dictionary[functionDisplayName] : null,
+                filePathname != NO_STRING ? dictionary[filePathname] : null, getComponentName());
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects defects into a table, assigning each distinct string an index as it is first seen
+     */
+    public static final class Builder {
+        private long[] cids;
+        private int[] checkerNames;
+        private int[] functionDisplayNames;
+        private int[] filePathnames;
+        private int[] componentNames;
+        private int size;
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        public Builder(int expectedSize) {
+            final int capacity = Math.max(1, expectedSize);
+            cids = new long[capacity];
+            checkerNames = new int[capacity];
+            functionDisplayNames = new int[capacity];
+            filePathnames = new int[capacity];
+            componentNames = new int[capacity];
+        }
+
+        public Builder add(CoverityDefect defect) {
+            if (size == cids.length) {
+                final int capacity = size * 2;
+                cids = Arrays.copyOf(cids, capacity);
+                checkerNames = Arrays.copyOf(checkerNames, capacity);
+                functionDisplayNames = Arrays.copyOf(functionDisplayNames, capacity);
+                filePathnames = Arrays.copyOf(filePathnames, capacity);
+                componentNames = Arrays.copyOf(componentNames, capacity);
+            }
+            cids[size] = defect.getCid() != null ? defect.getCid() : NO_CID;
+            checkerNames[size] = indexOf(defect.getCheckerName());
+            functionDisplayNames[size] = indexOf(defect.getFunctionDisplayName());
+            filePathnames[size] = indexOf(defect.getFilePathname());
+            componentNames[size] = indexOf(defect.getComponentName());
+            size++;
+            return this;
+        }
+
+        private int indexOf(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = dictionary.size();
+                indexes.put(value, index);
+                dictionary.add(strings.intern(value));
+            }
+            return index;
+        }
+
+        public DefectTable build() {
+            return new DefectTable(Arrays.copyOf(cids, size), Arrays.copyOf(checkerNames, size), Arrays.copyOf(functionDisplayNames, size),
+                Arrays.copyOf(filePathnames, size), Arrays.copyOf(componentNames, size), dictionary.toArray(new String[dictionary.size()]));
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.io.CountingInputStream;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Job;
+import hudson.model.Run;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * The defect counts of the builds of a job, kept in a small file in the job directory so the trend graph does not have
+ * to load every build. A build adds one entry per {@link CoverityBuildAction} when it completes and its entries are
+ * removed when it is deleted. The entries are kept ordered by build number, so a build which completes after a later
+ * one is inserted in its place. A job without the file, for example one recorded by an older version of the plugin,
+ * gets it from its build history the first time it is read. The file of a job is only changed while holding the lock of
+ * that job.
+ */
+public final class DefectTrend {
+    private static final Logger logger = Logger.getLogger(DefectTrend.class.getName());
+
+    private static final String TREND_FILE_NAME = "coverity-trend.bin";
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * One instance of each trend file, which is the lock of its job
+     */
+    private static final Interner<File> locks = Interners.newWeakInterner();
+
+    private DefectTrend() {
+    }
+
+    /**
+     * The defect counts of one stream or view of a build
+     */
+    public static final class Entry {
+        private final int buildNumber;
+        private final String displayName;
+        private final String builtOn;
+        private final String series;
+        private final int defectCount;
+        private final int newDefectCount;
+        private final int fixedDefectCount;
+
+        /**
+         * @param newDefectCount number of new defects, or -1 if the build was not compared with the previous one
+         * @param fixedDefectCount number of fixed defects, or -1 if the build was not compared with the previous one
+         */
+        public Entry(int buildNumber, String displayName, String builtOn, String series, int defectCount,
+                     int newDefectCount, int fixedDefectCount) {
+            this.buildNumber = buildNumber;
+            this.displayName = displayName;
+            this.builtOn = builtOn;
+            this.series = series;
+            this.defectCount = defectCount;
+            this.newDefectCount = newDefectCount;
+            this.fixedDefectCount = fixedDefectCount;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Name of the node the build ran on, null when it is unknown
+         */
+        public String getBuiltOn() {
+            return builtOn;
+        }
+
+        /**
+         * Name of the series in the trend graph
+         */
+        public String getSeries() {
+            return series;
+        }
+
+        public int getDefectCount() {
+            return defectCount;
+        }
+
+        public boolean isCompared() {
+            return newDefectCount >= 0 && fixedDefectCount >= 0;
+        }
+
+        public int getNewDefectCount() {
+            return Math.max(0, newDefectCount);
+        }
+
+        public int getFixedDefectCount() {
+            return Math.max(0, fixedDefectCount);
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(buildNumber);
+            DefectTable.writeString(out, displayName);
+            out.writeBoolean(builtOn != null);
+            if (builtOn != null) {
+                DefectTable.writeString(out, builtOn);
+            }
+            DefectTable.writeString(out, series);
+            out.writeInt(defectCount);
+            out.writeInt(newDefectCount);
+            out.writeInt(fixedDefectCount);
+        }
+
+        private static Entry readFrom(DataInputStream in) throws IOException {
+            final int buildNumber = in.readInt();
+            final String displayName = DefectTable.readString(in);
+            final String builtOn = in.readBoolean() ? DefectTable.readString(in) : null;
+            return new Entry(buildNumber, displayName, builtOn, DefectTable.readString(in), in.readInt(), in.readInt(),
+                in.readInt());
+        }
+    }
+
+    /**
+     * The entries of the builds of the job, oldest first
+     */
+    public static List<Entry> read(Job<?, ?> job) {
+        final File file = locks.intern(getFile(job));
+        synchronized (file) {
+            if (!file.isFile()) {
+                return rebuild(job, file);
+            }
+            try {
+                return read(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read the Coverity trend of " + job + " from " + file, e);
+                return rebuild(job, file);
+            }
+        }
+    }
+
+    /**
+     * Adds the entries of a completed build. A job without a trend file is left alone, its file is created from the
+     * build history when it is first read.
+     */
+    public static void record(Run<?, ?> run) {
+        final List<Entry> entries = entriesOf(run);
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        final File file = locks.intern(getFile(run.getParent()));
+        synchronized (file) {
+            if (!file.isFile()) {
+                return;
+            }
+            try {
+                insert(file, run.getNumber(), entries);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to add " + run + " to the Coverity trend in " + file, e);
+                // created again from the build history the next time it is read
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of a deleted build
+     */
+    public static void remove(Run<?, ?> run) {
+        final File file = locks.intern(getFile(run.getParent()));
+        synchronized (file) {
+            if (!file.isFile()) {
+                return;
+            }
+            try {
+                final List<Entry> entries = read(file);
+                final List<Entry> kept = new ArrayList<>(entries.size());
+                for (Entry entry : entries) {
+                    if (entry.getBuildNumber() != run.getNumber()) {
+                        kept.add(entry);
+                    }
+                }
+                if (kept.size() != entries.size()) {
+                    write(file, kept);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to remove " + run + " from the Coverity trend in " + file, e);
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the series and the counts of the last maxBuilds builds as JSON, oldest build first. Each build has the
+     * number of defects of each series, 0 where the build has none, and the number of new and fixed defects when it
+     * was compared with the previous build.
+     */
+    public static JSONObject toJSON(List<Entry> entries, int maxBuilds) {
+        // the entries of a build follow each other, so the window starts at the first entry of the oldest build in it
+        int first = entries.size();
+        int builds = 0;
+        while (first > 0 && builds < maxBuilds) {
+            final int number = entries.get(first - 1).getBuildNumber();
+            while (first > 0 && entries.get(first - 1).getBuildNumber() == number) {
+                first--;
+            }
+            builds++;
+        }
+        final List<Entry> window = entries.subList(first, entries.size());
+
+        final Map<String, Integer> series = new LinkedHashMap<>();
+        for (Entry entry : window) {
+            if (!series.containsKey(entry.getSeries())) {
+                series.put(entry.getSeries(), series.size());
+            }
+        }
+
+        final JSONArray rows = new JSONArray();
+        for (int i = 0; i < window.size(); ) {
+            final Entry build = window.get(i);
+            final int[] counts = new int[series.size()];
+            int newDefects = 0;
+            int fixedDefects = 0;
+            boolean compared = false;
+            for (; i < window.size() && window.get(i).getBuildNumber() == build.getBuildNumber(); i++) {
+                final Entry entry = window.get(i);
+                counts[series.get(entry.getSeries())] += entry.getDefectCount();
+                if (entry.isCompared()) {
+                    compared = true;
+                    newDefects += entry.getNewDefectCount();
+                    fixedDefects += entry.getFixedDefectCount();
+                }
+            }
+
+            final JSONObject row = new JSONObject();
+            row.put("number", build.getBuildNumber());
+            row.put("name", build.getBuiltOn() != null ? build.getDisplayName() + ' ' + build.getBuiltOn() : build.getDisplayName());
+            final JSONArray values = new JSONArray();
+            for (int count : counts) {
+                values.add(count);
+            }
+            row.put("counts", values);
+            if (compared) {
+                row.put("new", newDefects);
+                row.put("fixed", fixedDefects);
+            }
+            rows.add(row);
+        }
+
+        final JSONObject result = new JSONObject();
+        result.put("series", JSONArray.fromObject(series.keySet()));
+        result.put("builds", rows);
+        return result;
+    }
+
+    /**
+     * The entries for the Coverity actions of a build
+     */
+    static List<Entry> entriesOf(Run<?, ?> run) {
+        final List<Entry> entries = new ArrayList<>();
+        String builtOn = null;
+        if (run instanceof AbstractBuild) {
+            builtOn = ((AbstractBuild<?, ?>)run).getBuiltOnStr();
+        }
+        for (CoverityBuildAction action : run.getActions(CoverityBuildAction.class)) {
+            if (action != null && action.getGraphDisplayName() != null) {
+                entries.add(new Entry(run.getNumber(), run.getDisplayName(), builtOn, action.getGraphDisplayName(),
+                    action.getDefectCount(),
+                    action.isCompared() ? action.getNewDefectCount() : -1,
+                    action.isCompared() ? action.getFixedDefectCount() : -1));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Identifies the current entries of the job, null when its trend file was not created yet
+     */
+    public static String getVersion(Job<?, ?> job) {
+        final File file = getFile(job);
+        final long lastModified = file.lastModified();
+        return lastModified > 0 ? lastModified + "-" + file.length() : null;
+    }
+
+    /**
+     * Time the entries of the job last changed, 0 when its trend file was not created yet
+     */
+    public static long getLastModified(Job<?, ?> job) {
+        return getFile(job).lastModified();
+    }
+
+    private static File getFile(Job<?, ?> job) {
+        return new File(job.getRootDir(), TREND_FILE_NAME);
+    }
+
+    /**
+     * Creates the file from the completed builds of the job, which loads every build once
+     */
+    private static List<Entry> rebuild(Job<?, ?> job, File file) {
+        final List<Entry> entries = new ArrayList<>();
+        Run<?, ?> build = job.getLastCompletedBuild();
+        while (build != null) {
+            final List<Entry> buildEntries = entriesOf(build);
+            Collections.reverse(buildEntries);
+            entries.addAll(buildEntries);
+            build = build.getPreviousBuild();
+        }
+        Collections.reverse(entries);
+
+        try {
+            write(file, entries);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the Coverity trend of " + job + " to " + file, e);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the entries of the file. An entry which was not completely written, because Jenkins stopped while a build
+     * was added, is cut off the end of the file so the entries added next follow the complete ones. The caller holds
+     * the lock of the job.
+     */
+    static List<Entry> read(File file) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        long complete;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version + " of " + file);
+            }
+            complete = counter.getCount();
+            while (true) {
+                try {
+                    entries.add(Entry.readFrom(in));
+                } catch (EOFException e) {
+                    break;
+                }
+                complete = counter.getCount();
+            }
+        }
+
+        if (complete < file.length()) {
+            logger.log(Level.WARNING, "Removing the incomplete last entry of " + file);
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(complete);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the entries to a temporary file which then replaces the file, so readers never see a partial file
+     */
+    static void write(File file, List<Entry> entries) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            for (Entry entry : entries) {
+                entry.writeTo(out);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    /**
+     * Adds the entries of a build in the order of the build numbers, replacing any entries the build already has. The
+     * entries are appended when the build is later than every build in the file, which is the usual case, and the file
+     * is written again otherwise.
+     */
+    static void insert(File file, int buildNumber, List<Entry> entries) throws IOException {
+        final List<Entry> existing = read(file);
+        if (existing.isEmpty() || existing.get(existing.size() - 1).getBuildNumber() < buildNumber) {
+            append(file, entries);
+            return;
+        }
+
+        final List<Entry> merged = new ArrayList<>(existing.size() + entries.size());
+        boolean inserted = false;
+        for (Entry entry : existing) {
+            if (!inserted && entry.getBuildNumber() >= buildNumber) {
+                merged.addAll(entries);
+                inserted = true;
+            }
+            if (entry.getBuildNumber() != buildNumber) {
+                merged.add(entry);
+            }
+        }
+        write(file, merged);
+    }
+
+    static void append(File file, List<Entry> entries) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (Entry entry : entries) {
+                entry.writeTo(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes pages so each request takes about the target latency and each page stays within the target size. The observed
+ * time and bytes per record of the last page are used to estimate how many records fit in both targets, so pages grow
+ * while the server answers quickly and shrink when large pages get slow or when records are large, for example
+ * because of long file paths. The size changes by at most a factor of two between pages.
+ */
+public class AdaptivePageSize implements ParallelPageFetcher.PageSizePolicy {
+    /**
+     * Time in milliseconds each page request should take
+     */
+    public static final long TARGET_LATENCY = Long.getLong(AdaptivePageSize.class.getName() + ".targetLatency", TimeUnit.SECONDS.toMillis(5));
+
+    /**
+     * Size in bytes each page should have, which bounds the memory held by the pages fetched in parallel
+     */
+    public static final long TARGET_PAGE_BYTES = Long.getLong(AdaptivePageSize.class.getName() + ".targetPageBytes", 2L * 1024 * 1024);
+
+    /**
+     * Smallest page size used
+     */
+    public static final int MIN_PAGE_SIZE = Integer.getInteger(AdaptivePageSize.class.getName() + ".minPageSize", 100);
+
+    /**
+     * Largest page size used
+     */
+    public static final int MAX_PAGE_SIZE = Integer.getInteger(AdaptivePageSize.class.getName() + ".maxPageSize", 5000);
+
+    private final long targetLatencyMillis;
+    private final long targetPageBytes;
+    private final int minPageSize;
+    private final int maxPageSize;
+
+    public AdaptivePageSize() {
+        this(TARGET_LATENCY, TARGET_PAGE_BYTES, MIN_PAGE_SIZE, MAX_PAGE_SIZE);
+    }
+
+    public AdaptivePageSize(long targetLatencyMillis, long targetPageBytes, int minPageSize, int maxPageSize) {
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.targetPageBytes = targetPageBytes;
+        this.minPageSize = Math.max(1, minPageSize);
+        this.maxPageSize = Math.max(this.minPageSize, maxPageSize);
+    }
+
+    @Override
+    public int nextPageSize(int pageSize, long elapsedMillis, long pageBytes) {
+        final long latencyEstimate = elapsedMillis > 0 ? pageSize * targetLatencyMillis / elapsedMillis : Long.MAX_VALUE;
+        final long sizeEstimate = pageBytes > 0 ? pageSize * targetPageBytes / pageBytes : Long.MAX_VALUE;
+        final long estimate = Math.min(latencyEstimate, sizeEstimate);
+        final long bounded = Math.max(pageSize / 2, Math.min(2L * pageSize, estimate));
+        return (int)Math.max(minPageSize, Math.min(maxPageSize, bounded));
+    }
+}
@@ -87,9 +87,10 @@ public class ClientAuthenticationHandlerWSS implements SOAPHandler<SOAPMessageCo
 
     public boolean handleMessage(SOAPMessageContext smc) {
         boolean outbound = ((Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
-        SOAPMessage msg = smc.getMessage();
+        // only ask for the message when securing requests, so responses are not turned into a SAAJ message
         if(outbound) {
             try {
+                SOAPMessage msg = smc.getMessage();
                 ProcessingContext context = xwssProcessor.createProcessingContext(msg);
                 context.setSOAPMessage(msg);
                 SOAPMessage secureMsg = xwssProcessor.secureOutboundMessage(context);
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Identifies a connection to a Coverity Connect instance: the server address and the credential used to authenticate,
+ * which includes a digest of the user and password of instances configured before credentials were used.
+ * Instances which only differ by name, or copies created with {@link CIMInstance#cloneWithCredential(String)},
+ * share the same key and therefore the same web service clients.
+ */
+public final class ConnectionKey {
+    private final String host;
+    private final int port;
+    private final boolean useSSL;
+    private final String credentialId;
+    private final String legacyCredentialDigest;
+
+    public ConnectionKey(String host, int port, boolean useSSL, String credentialId) {
+        this(host, port, useSSL, credentialId, null);
+    }
+
+    public ConnectionKey(String host, int port, boolean useSSL, String credentialId, String legacyCredentialDigest) {
+        this.host = host;
+        this.port = port;
+        this.useSSL = useSSL;
+        this.credentialId = credentialId;
+        this.legacyCredentialDigest = legacyCredentialDigest;
+    }
+
+    public static ConnectionKey of(CIMInstance cimInstance) {
+        return new ConnectionKey(cimInstance.getHost(), cimInstance.getPort(), cimInstance.isUseSSL(),
+            cimInstance.getCredentialId(), cimInstance.getLegacyCredentialDigest());
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isUseSSL() {
+        return useSSL;
+    }
+
+    public String getCredentialId() {
+        return credentialId;
+    }
+
+    public String getLegacyCredentialDigest() {
+        return legacyCredentialDigest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ConnectionKey that = (ConnectionKey) o;
+
+        if (port != that.port) return false;
+        if (useSSL != that.useSSL) return false;
+        if (host != null ? !host.equals(that.host) : that.host != null) return false;
+        if (credentialId != null ? !credentialId.equals(that.credentialId) : that.credentialId != null) return false;
+        return legacyCredentialDigest != null ? legacyCredentialDigest.equals(that.legacyCredentialDigest) : that.legacyCredentialDigest == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = host != null ? host.hashCode() : 0;
+        result = 31 * result + port;
+        result = 31 * result + (useSSL ? 1 : 0);
+        result = 31 * result + (credentialId != null ? credentialId.hashCode() : 0);
+        result = 31 * result + (legacyCredentialDigest != null ? legacyCredentialDigest.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return (useSSL ? "https" : "http") + "://" + host + ":" + port + " (credential " + credentialId + ")";
+    }
+}
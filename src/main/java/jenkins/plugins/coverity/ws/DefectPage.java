@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coverity.ws.v9.MergedDefectDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * A page of merged defects, keeping only the fields shown for a build
+ */
+public class DefectPage implements ParallelPageFetcher.SizedPage {
+    /**
+     * Bytes held by a defect besides its text: the defect, its strings and their character arrays
+     */
+    private static final int DEFECT_OVERHEAD = 160;
+
+    private final int totalNumberOfRecords;
+    private final List<CoverityDefect> defects;
+
+    public DefectPage(int totalNumberOfRecords, List<CoverityDefect> defects) {
+        this.totalNumberOfRecords = totalNumberOfRecords;
+        this.defects = defects;
+    }
+
+    /**
+     * Projects a page returned by the Defect service, so the full defect objects can be released right away
+     */
+    public static DefectPage of(MergedDefectsPageDataObj page) {
+        final List<CoverityDefect> defects = new ArrayList<>(page.getMergedDefects().size());
+        for (MergedDefectDataObj defect : page.getMergedDefects()) {
+            defects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname(),
+                defect.getComponentName()));
+        }
+        return new DefectPage(page.getTotalNumberOfRecords() != null ? page.getTotalNumberOfRecords() : 0, defects);
+    }
+
+    public int getTotalNumberOfRecords() {
+        return totalNumberOfRecords;
+    }
+
+    public List<CoverityDefect> getDefects() {
+        return defects;
+    }
+
+    /**
+     * Estimate of the memory held by the defects of the page, from the length of their text
+     */
+    @Override
+    public long getSizeInBytes() {
+        long size = 0;
+        for (CoverityDefect defect : defects) {
+            size += DEFECT_OVERHEAD + 2L * (length(defect.getCheckerName()) + length(defect.getFunctionDisplayName()) +
+                length(defect.getFilePathname()) + length(defect.getComponentName()));
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -16,13 +16,20 @@ import java.io.PrintStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 import com.coverity.ws.v9.DefectService;
-import com.coverity.ws.v9.MergedDefectDataObj;
 import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
-import com.coverity.ws.v9.MergedDefectsPageDataObj;
 import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
 import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
 import com.coverity.ws.v9.StreamIdDataObj;
 
@@ -32,12 +39,15 @@ import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Hudson;
 import hudson.model.Result;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
 import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.DefectDiff;
+import jenkins.plugins.coverity.DefectTable;
 import jenkins.plugins.coverity.CoverityPublisher;
 import jenkins.plugins.coverity.DefectFilters;
 import org.apache.commons.lang.StringUtils;
@@ -47,6 +57,43 @@ import org.apache.commons.lang.StringUtils;
  * will be added as a {@link CoverityBuildAction} to the build.
  */
 public class DefectReader {
+    /**
+     * Maximum number of defect pages requested at the same time
+     */
+    public static final int PAGE_PARALLELISM = Integer.getInteger(DefectReader.class.getName() + ".pageParallelism", 4);
+
+    /**
+     * Number of times a failed defect page request is retried
+     */
+    public static final int PAGE_RETRIES = Integer.getInteger(DefectReader.class.getName() + ".pageRetries", 2);
+
+    /**
+     * Time in milliseconds after which fetching defects is abandoned, unless configured globally or for the job
+     */
+    public static final long TIME_BUDGET = Long.getLong(DefectReader.class.getName() + ".timeBudget", TimeUnit.MINUTES.toMillis(30));
+
+    /**
+     * Number of defects requested per page, unless configured globally or for the job
+     */
+    public static final int PAGE_SIZE = Integer.getInteger(DefectReader.class.getName() + ".pageSize", 1000);
+
+    /**
+     * Number of incremental fetches after which defects are fetched in full again, to pick up defects which started
+     * or stopped matching the filters after being triaged
+     */
+    public static final int FULL_FETCH_INTERVAL = Integer.getInteger(DefectReader.class.getName() + ".fullFetchInterval", 20);
+
+    /**
+     * Snapshot comparison matching defects in the shown snapshot which are absent from the compared snapshot
+     */
+    private static final String SNAPSHOT_COMPARISON_ABSENT = "Absent";
+
+    /**
+     * Read merged defects from the SOAP response stream, keeping only the fields shown for a build, instead of
+     * unmarshalling complete merged defects
+     */
+    public static final boolean PROJECTED_DECODING = Boolean.getBoolean(DefectReader.class.getName() + ".projectedDecoding");
+
     private AbstractBuild<?, ?> build;
     private BuildListener listener;
     private CoverityPublisher publisher;
@@ -74,20 +121,71 @@ public class DefectReader {
 
         listener.getLogger().println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\"", cimStream.getStream()));
 
-        List<MergedDefectDataObj> defects = null;
-
         try {
-            defects = getDefectsForSnapshot(cimInstance, cimStream, listener.getLogger());
+            final CoverityPublisher.DescriptorImpl descriptor = publisher.getDescriptor();
+            final int maxDefects = getSetting(publisher.getMaxDefects(), descriptor.getMaxDefects(), Integer.MAX_VALUE);
+            final DefectFilters defectFilters = cimStream.getDefectFilters();
+            final String filterDigest = defectFilters != null ? defectFilters.getDigest() : null;
+
+            // incremental fetches need the complete list of the previous build, which is not kept when it is limited
+            final boolean incremental = publisher.getFetchDefectsIncrementally() && maxDefects == Integer.MAX_VALUE;
+            final boolean shared = descriptor.isShareDefects();
+            final boolean countOnly = publisher.getCountDefectsOnly();
+            // the defects of a count only build are fetched later, from the snapshot which was counted
+            final Long snapshotId = incremental || shared || countOnly ? getLastSnapshotId(cimInstance, cimStream) : null;
+            final CoverityBuildAction previousAction = incremental ? getPreviousAction(cimStream, filterDigest) : null;
+            final DefectResultCache.Key cacheKey = shared && snapshotId != null ?
+                new DefectResultCache.Key(ConnectionKey.of(cimInstance), cimStream.getStream(), snapshotId, filterDigest) : null;
+
+            List<CoverityDefect> matchingDefects;
+            boolean fetched = false;
+            int defectCount = 0;
+            int incrementalFetches = 0;
+            if (countOnly) {
+                matchingDefects = cacheKey != null ? DefectResultCache.getInstance().get(cacheKey, maxDefects) : null;
+                if (matchingDefects == null) {
+                    defectCount = countDefects(cimInstance, cimStream, snapshotId);
+                }
+            } else {
+                final SnapshotLoader loader = new SnapshotLoader(cimInstance, cimStream, previousAction, snapshotId, maxDefects);
+                // builds which finish on the same snapshot wait for the one fetching its defects
+                matchingDefects = cacheKey != null ? DefectResultCache.getInstance().get(cacheKey, maxDefects, loader) : loader.load();
+                fetched = loader.fetched;
+                incrementalFetches = loader.incrementalFetches;
+            }
+            if (matchingDefects != null && !fetched) {
+                listener.getLogger().println(MessageFormat.format("[Coverity] Using defects fetched for snapshot {0} by another build", String.valueOf(snapshotId)));
+            }
 
-            List<CoverityDefect> matchingDefects = new ArrayList<>();
+            DefectDiff diff = null;
+            if (matchingDefects != null) {
+                final DefectTable defectTable = DefectTable.of(matchingDefects);
+                matchingDefects = defectTable;
+                defectCount = matchingDefects.size();
 
-            // Loop through all defects create defect objects
-            for(MergedDefectDataObj defect : defects) {
-                matchingDefects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname()));
+                // only the complete list of defects is shared, by the cache, or compared
+                if (matchingDefects.size() < maxDefects) {
+                    final CoverityBuildAction comparedAction = previousAction != null ? previousAction : getPreviousStreamAction(cimStream);
+                    if (comparedAction != null) {
+                        diff = DefectDiff.compute(comparedAction.getSortedCids(), defectTable.getSortedCids());
+                    }
+                }
             }
 
-            if(!matchingDefects.isEmpty()) {
-                listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", matchingDefects.size()));
+            if(defectCount > 0) {
+                listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", defectCount));
+            } else {
+                listener.getLogger().println("[Coverity] No defects matched all filters.");
+            }
+
+            if (diff != null) {
+                listener.getLogger().println(MessageFormat.format("[Coverity] {0} new and {1} fixed defects since the previous build",
+                    diff.getNewCids().length, diff.getFixedCids().length));
+            }
+
+            // without a previous build to compare with, every defect is new
+            final int failingDefects = publisher.getOnlyNewDefects() && diff != null ? diff.getNewCids().length : defectCount;
+            if(failingDefects > 0) {
                 if(publisher.isFailBuild()) {
                     if(build.getResult().isBetterThan(Result.FAILURE)) {
                         build.setResult(Result.FAILURE);
@@ -99,12 +197,17 @@ public class DefectReader {
                 if(publisher.isUnstable()){
                     publisher.setUnstableBuild(true);
                 }
-
-            } else {
-                listener.getLogger().println("[Coverity] No defects matched all filters.");
             }
 
-            CoverityBuildAction action = new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), matchingDefects);
+            CoverityBuildAction action = matchingDefects != null ?
+                new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), matchingDefects) :
+                new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), cimStream.getCredentialId(), defectFilters, defectCount);
+            if (snapshotId != null) {
+                action.setSnapshot(snapshotId, filterDigest, incrementalFetches);
+            }
+            if (diff != null) {
+                action.setDiff(diff);
+            }
             build.addAction(action);
 
             String rootUrl = Jenkins.getInstance().getRootUrl();
@@ -120,39 +223,318 @@ public class DefectReader {
         }
     }
 
-    private List<MergedDefectDataObj> getDefectsForSnapshot(CIMInstance cim, CIMStream cimStream, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+    /**
+     * Returns the action of the previous build when its defects were read from a snapshot of the same stream with the
+     * same filters, and can be updated with the changes since that snapshot
+     */
+    private CoverityBuildAction getPreviousAction(CIMStream cimStream, String filterDigest) {
+        final Run<?, ?> previousBuild = build.getPreviousBuild();
+        final CoverityBuildAction previousAction = previousBuild != null ? previousBuild.getAction(CoverityBuildAction.class) : null;
+        if (previousAction == null || previousAction.getSnapshotId() == null || previousAction.isCountOnly() ||
+            previousAction.getIncrementalFetches() >= FULL_FETCH_INTERVAL ||
+            !StringUtils.equals(previousAction.getCimInstance(), cimStream.getInstance()) ||
+            !StringUtils.equals(previousAction.getProjectId(), cimStream.getProject()) ||
+            !StringUtils.equals(previousAction.getStreamId(), cimStream.getStream()) ||
+            !StringUtils.equals(previousAction.getFilterDigest(), filterDigest)) {
+            return null;
+        }
+        return previousAction;
+    }
+
+    /**
+     * Returns the action of the previous build for the same stream when it kept the defects, to compare with
+     */
+    private CoverityBuildAction getPreviousStreamAction(CIMStream cimStream) {
+        final Run<?, ?> previousBuild = build.getPreviousBuild();
+        final CoverityBuildAction previousAction = previousBuild != null ? previousBuild.getAction(CoverityBuildAction.class) : null;
+        if (previousAction == null || previousAction.isCountOnly() || previousAction.isSampled() ||
+            !StringUtils.equals(previousAction.getCimInstance(), cimStream.getInstance()) ||
+            !StringUtils.equals(previousAction.getProjectId(), cimStream.getProject()) ||
+            !StringUtils.equals(previousAction.getStreamId(), cimStream.getStream())) {
+            return null;
+        }
+        return previousAction;
+    }
+
+    /**
+     * Returns the id of the latest snapshot of the stream, or null if the stream has no snapshots
+     */
+    private Long getLastSnapshotId(CIMInstance cim, CIMStream cimStream) throws IOException, CovRemoteServiceException_Exception {
+        final StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName(cimStream.getStream());
+
+        final ServicePool<ConfigurationService> configurationServicePool = cim.getConfigurationServicePool();
+        ConfigurationService cs = configurationServicePool.checkout();
+        try {
+            Long lastSnapshotId = null;
+            for (SnapshotIdDataObj snapshot : cs.getSnapshotsForStream(streamId, new SnapshotFilterSpecDataObj())) {
+                if (lastSnapshotId == null || snapshot.getId() > lastSnapshotId) {
+                    lastSnapshotId = snapshot.getId();
+                }
+            }
+            return lastSnapshotId;
+        } catch (SOAPFaultException e) {
+            // an error response, the port is still usable
+            throw e;
+        } catch (WebServiceException e) {
+            configurationServicePool.invalidate(cs);
+            cs = null;
+            throw e;
+        } finally {
+            configurationServicePool.checkin(cs);
+        }
+    }
+
+    /**
+     * Fetches the defects of the snapshot, changed since the snapshot of the previous build when there is one
+     */
+    private final class SnapshotLoader implements DefectResultCache.Loader<CovRemoteServiceException_Exception> {
+        private final CIMInstance cimInstance;
+        private final CIMStream cimStream;
+        private final CoverityBuildAction previousAction;
+        private final Long snapshotId;
+        private final int maxDefects;
+        private boolean fetched;
+        private int incrementalFetches;
+
+        SnapshotLoader(CIMInstance cimInstance, CIMStream cimStream, CoverityBuildAction previousAction, Long snapshotId, int maxDefects) {
+            this.cimInstance = cimInstance;
+            this.cimStream = cimStream;
+            this.previousAction = previousAction;
+            this.snapshotId = snapshotId;
+            this.maxDefects = maxDefects;
+        }
+
+        @Override
+        public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+            fetched = true;
+            if (previousAction != null && snapshotId != null) {
+                incrementalFetches = previousAction.getIncrementalFetches() + 1;
+                return getChangedDefects(cimInstance, cimStream, previousAction, snapshotId, listener.getLogger());
+            }
+            return getDefectsForSnapshot(cimInstance, cimStream, snapshotId, maxDefects, listener.getLogger());
+        }
+    }
+
+    /**
+     * Updates the defects of the previous build with the defects introduced and fixed since its snapshot
+     */
+    private List<CoverityDefect> getChangedDefects(CIMInstance cim, CIMStream cimStream, CoverityBuildAction previousAction,
+                                                   long snapshotId, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+        final long previousSnapshotId = previousAction.getSnapshotId();
+        if (previousSnapshotId == snapshotId) {
+            logger.println(MessageFormat.format("[Coverity] No new snapshot since snapshot {0}, using the defects of the previous build", String.valueOf(snapshotId)));
+            return new ArrayList<>(previousAction.getDefects());
+        }
+
+        logger.println(MessageFormat.format("[Coverity] Fetching defects changed since snapshot {0}", String.valueOf(previousSnapshotId)));
+
+        // defects matching the filters in the new snapshot which were not in the previous one
+        final DefectFilters defectFilters = cimStream.getDefectFilters();
+        final MergedDefectFilterSpecDataObj newFilter = defectFilters != null ? defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+        newFilter.setSnapshotComparisonField(SNAPSHOT_COMPARISON_ABSENT);
+        final List<CoverityDefect> newDefects = new ArrayList<>();
+        fetchDefects(cim, cimStream.getStream(), newFilter, createSnapshotScope(snapshotId, previousSnapshotId), Integer.MAX_VALUE, new CollectingListener(newDefects));
+
+        // defects in the previous snapshot which are no longer in the new one, without the filters, since a
+        // defect may have been triaged to no longer match them
+        final MergedDefectFilterSpecDataObj fixedFilter = new MergedDefectFilterSpecDataObj();
+        fixedFilter.setSnapshotComparisonField(SNAPSHOT_COMPARISON_ABSENT);
+        final List<CoverityDefect> fixedDefects = new ArrayList<>();
+        fetchDefects(cim, cimStream.getStream(), fixedFilter, createSnapshotScope(previousSnapshotId, snapshotId), Integer.MAX_VALUE, new CollectingListener(fixedDefects));
+
+        logger.println(MessageFormat.format("[Coverity] Found {0} new and {1} fixed defects since snapshot {2}",
+            newDefects.size(), fixedDefects.size(), String.valueOf(previousSnapshotId)));
+
+        final Map<Long, CoverityDefect> defects = new TreeMap<>();
+        for (CoverityDefect defect : previousAction.getDefects()) {
+            if (defect.getCid() != null) {
+                defects.put(defect.getCid(), defect);
+            }
+        }
+        for (CoverityDefect defect : fixedDefects) {
+            defects.remove(defect.getCid());
+        }
+        for (CoverityDefect defect : newDefects) {
+            defects.put(defect.getCid(), defect);
+        }
+        return new ArrayList<>(defects.values());
+    }
+
+    /**
+     * Returns the number of defects matching the filters, requesting a single defect
+     */
+    private int countDefects(CIMInstance cim, CIMStream cimStream, Long snapshotId) throws IOException, CovRemoteServiceException_Exception {
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        final MergedDefectFilterSpecDataObj filter = defectFilters != null ? defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+
+        final int[] defectCount = new int[1];
+        fetchPages(cim, cimStream.getStream(), filter, createSnapshotScope(snapshotId, null), 1, 1, getTimeBudget(), null,
+            new ParallelPageFetcher.PageListener<DefectPage>() {
+                @Override
+                public void onPage(int startIndex, int total, DefectPage page) {
+                    defectCount[0] = page.getTotalNumberOfRecords();
+                }
+            });
+        return defectCount[0];
+    }
+
+    /**
+     * Fetches the defects matching the filters in a snapshot of the stream, using the global settings. This is used
+     * to read the defects of a build which only counted them.
+     *
+     * @param snapshotId the snapshot to read, or null to read the last snapshot
+     */
+    public static List<CoverityDefect> fetchDefectsForSnapshot(CIMInstance cim, String stream, DefectFilters defectFilters, Long snapshotId,
+                                                               CoverityPublisher.DescriptorImpl descriptor) throws IOException, CovRemoteServiceException_Exception {
+        final MergedDefectFilterSpecDataObj filter = defectFilters != null ? defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+        final int timeBudgetMinutes = getSetting(null, descriptor.getFetchDefectsTimeBudget(), 0);
+
+        final List<CoverityDefect> defects = new ArrayList<>();
+        fetchPages(cim, stream, filter, createSnapshotScope(snapshotId, null),
+            getSetting(null, descriptor.getDefectsPageSize(), PAGE_SIZE),
+            getSetting(null, descriptor.getMaxDefects(), Integer.MAX_VALUE),
+            timeBudgetMinutes > 0 ? TimeUnit.MINUTES.toMillis(timeBudgetMinutes) : TIME_BUDGET,
+            descriptor.isAdaptivePageSize() ? new AdaptivePageSize() : null,
+            new CollectingListener(defects));
+        return defects;
+    }
 
-        List<MergedDefectDataObj> mergeList = new ArrayList<MergedDefectDataObj>();
+    private List<CoverityDefect> getDefectsForSnapshot(CIMInstance cim, final CIMStream cimStream, Long snapshotId, int maxDefects, final PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+
+        final List<CoverityDefect> mergeList = new ArrayList<CoverityDefect>();
+
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        final MergedDefectFilterSpecDataObj filter = defectFilters != null ? defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
 
-        DefectService ds = cim.getDefectService();
+        fetchDefects(cim, cimStream.getStream(), filter, createSnapshotScope(snapshotId, null), maxDefects, new ParallelPageFetcher.PageListener<DefectPage>() {
+            @Override
+            public void onPage(int startIndex, int total, DefectPage page) {
+                if (startIndex == 0 && page.getTotalNumberOfRecords() > total)
+                    logger.println(MessageFormat.format("[Coverity] Fetching the first {0} of {1} defects for stream \"{2}\"", total, page.getTotalNumberOfRecords(), cimStream.getStream()));
+                if (startIndex > 0)
+                    logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), startIndex, total));
 
+                mergeList.addAll(page.getDefects());
+            }
+        });
+
+        return mergeList;
+    }
+
+    /**
+     * Shows the given snapshot, or the last snapshot when it is not known, compared to another snapshot
+     */
+    private static SnapshotScopeSpecDataObj createSnapshotScope(Long showSnapshotId, Long compareSnapshotId) {
+        final SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
+        snapshotScope.setShowSelector(showSnapshotId != null ? String.valueOf(showSnapshotId) : "last()");
+        if (compareSnapshotId != null) {
+            snapshotScope.setCompareSelector(String.valueOf(compareSnapshotId));
+        }
+        return snapshotScope;
+    }
+
+    /**
+     * Fetches the pages of merged defects for the stream using the settings of the publisher
+     */
+    private void fetchDefects(CIMInstance cim, String stream, MergedDefectFilterSpecDataObj filter, SnapshotScopeSpecDataObj snapshotScope,
+                              int maxDefects, ParallelPageFetcher.PageListener<DefectPage> pageListener) throws IOException, CovRemoteServiceException_Exception {
+        final CoverityPublisher.DescriptorImpl descriptor = publisher.getDescriptor();
+        final int pageSize = getSetting(publisher.getDefectsPageSize(), descriptor.getDefectsPageSize(), PAGE_SIZE);
+
+        fetchPages(cim, stream, filter, snapshotScope, pageSize, maxDefects, getTimeBudget(),
+            descriptor.isAdaptivePageSize() ? new AdaptivePageSize() : null, pageListener);
+    }
+
+    /**
+     * Time in milliseconds the publisher allows for fetching defects
+     */
+    private long getTimeBudget() {
+        final int timeBudgetMinutes = getSetting(publisher.getFetchDefectsTimeBudget(), publisher.getDescriptor().getFetchDefectsTimeBudget(), 0);
+        return timeBudgetMinutes > 0 ? TimeUnit.MINUTES.toMillis(timeBudgetMinutes) : TIME_BUDGET;
+    }
+
+    /**
+     * Fetches the pages of merged defects for the stream, passing each page to the page listener
+     */
+    private static void fetchPages(CIMInstance cim, String stream, final MergedDefectFilterSpecDataObj filter, final SnapshotScopeSpecDataObj snapshotScope,
+                                   int pageSize, int maxDefects, long timeBudget, ParallelPageFetcher.PageSizePolicy pageSizePolicy,
+                                   ParallelPageFetcher.PageListener<DefectPage> pageListener) throws IOException, CovRemoteServiceException_Exception {
         StreamIdDataObj streamId = new StreamIdDataObj();
-        streamId.setName(cimStream.getStream());
-        List<StreamIdDataObj> streamIds = new ArrayList<StreamIdDataObj>();
+        streamId.setName(stream);
+        final List<StreamIdDataObj> streamIds = new ArrayList<StreamIdDataObj>();
         streamIds.add(streamId);
 
-        DefectFilters defectFilters = cimStream.getDefectFilters();
-        MergedDefectFilterSpecDataObj filter = defectFilters != null ?  defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+        // use pooled clients so pages, and builds finishing at the same time, do not share a single web service port
+        final ServicePool<DefectService> defectServicePool = PROJECTED_DECODING ? null : cim.getDefectServicePool();
+        final StreamingDefectService streamingDefectService = PROJECTED_DECODING ? cim.getStreamingDefectService() : null;
 
-        PageSpecDataObj pageSpec = new PageSpecDataObj();
+        final ParallelPageFetcher fetcher = new ParallelPageFetcher(PAGE_PARALLELISM, PAGE_RETRIES, timeBudget, pageSizePolicy);
+        fetcher.fetch(new ParallelPageFetcher.PageSource<DefectPage, CovRemoteServiceException_Exception>() {
+            @Override
+            public DefectPage fetch(int startIndex, int pageSize) throws IOException, CovRemoteServiceException_Exception {
+                PageSpecDataObj pageSpec = new PageSpecDataObj();
+                pageSpec.setPageSize(pageSize);
+                pageSpec.setStartIndex(startIndex);
+                pageSpec.setSortAscending(true);
 
-        SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
-        snapshotScope.setShowSelector("last()");
+                if (streamingDefectService != null) {
+                    return streamingDefectService.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope);
+                }
 
-        // The loop will pull up to the maximum amount of defect, doing per page size
-        int pageSize = 1000; // Size of page to be pulled
-        int defectSize = 3000; // Maximum amount of defect to pull
-        for(int pageStart = 0; pageStart < defectSize; pageStart += pageSize){
-            if (pageStart >= pageSize)
-                logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), pageStart, defectSize));
+                DefectService ds = defectServicePool.checkout();
+                try {
+                    // project the page right away, so the complete merged defects can be collected
+                    return DefectPage.of(ds.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope));
+                } catch (SOAPFaultException e) {
+                    // an error response, the port is still usable
+                    throw e;
+                } catch (WebServiceException e) {
+                    // do not return a port to the pool after a communication failure
+                    defectServicePool.invalidate(ds);
+                    ds = null;
+                    throw e;
+                } finally {
+                    defectServicePool.checkin(ds);
+                }
+            }
 
-            pageSpec.setPageSize(pageSize);
-            pageSpec.setStartIndex(pageStart);
-            pageSpec.setSortAscending(true);
-            MergedDefectsPageDataObj mergedDefectsForStreams = ds.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope);
-            defectSize = mergedDefectsForStreams.getTotalNumberOfRecords();
-            mergeList.addAll(mergedDefectsForStreams.getMergedDefects());
+            @Override
+            public int getTotal(DefectPage page) {
+                return page.getTotalNumberOfRecords();
+            }
+
+            @Override
+            public boolean isRetryable(Exception e) {
+                // transport failures, not faults the server returned on purpose
+                return (e instanceof WebServiceException && !(e instanceof SOAPFaultException)) || e instanceof IOException;
+            }
+        }, CovRemoteServiceException_Exception.class, pageSize, maxDefects, pageListener);
+    }
+
+    private static class CollectingListener implements ParallelPageFetcher.PageListener<DefectPage> {
+        private final List<CoverityDefect> defects;
+
+        CollectingListener(List<CoverityDefect> defects) {
+            this.defects = defects;
         }
-        return mergeList;
+
+        @Override
+        public void onPage(int startIndex, int total, DefectPage page) {
+            defects.addAll(page.getDefects());
+        }
+    }
+
+    /**
+     * Returns the positive value configured for the job, otherwise the global one, otherwise the default value
+     */
+    private static int getSetting(Integer jobValue, Integer globalValue, int defaultValue) {
+        if (jobValue != null && jobValue > 0) {
+            return jobValue;
+        }
+        if (globalValue != null && globalValue > 0) {
+            return globalValue;
+        }
+        return defaultValue;
     }
 }
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+import hudson.Util;
+import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.DefectFile;
+import jenkins.plugins.coverity.DefectTable;
+
+/**
+ * Keeps the defects fetched for a snapshot of a stream, so jobs reading the same stream with the same filters after
+ * the same snapshot share one download. Builds which miss the same entry at the same time wait for the first of them
+ * to fetch the defects. Entries are weighed by their number of defects. When a spill directory is configured, entries
+ * evicted for size are written to disk and read back on the next request for them.
+ */
+public class DefectResultCache {
+    private static final Logger logger = Logger.getLogger(DefectResultCache.class.getName());
+
+    /**
+     * Maximum number of defects kept in memory, for all entries
+     */
+    public static final long MAX_WEIGHT = Long.getLong(DefectResultCache.class.getName() + ".maxDefects", 200000);
+
+    /**
+     * Time in milliseconds after which an entry which was not used is dropped
+     */
+    public static final long IDLE_TIMEOUT = Long.getLong(DefectResultCache.class.getName() + ".idleTimeout", TimeUnit.HOURS.toMillis(1));
+
+    /**
+     * Directory entries evicted from memory are written to, not set to drop them instead
+     */
+    public static final String SPILL_DIRECTORY = System.getProperty(DefectResultCache.class.getName() + ".spillDirectory");
+
+    private static final String SPILL_FILE_SUFFIX = ".defects";
+
+    private static DefectResultCache instance;
+
+    /**
+     * Identifies the defects of a snapshot of a stream, read with a connection's credential and a set of filters
+     */
+    public static final class Key {
+        private final ConnectionKey connection;
+        private final String stream;
+        private final long snapshotId;
+        private final String filterDigest;
+
+        public Key(ConnectionKey connection, String stream, long snapshotId, String filterDigest) {
+            this.connection = connection;
+            this.stream = stream;
+            this.snapshotId = snapshotId;
+            this.filterDigest = filterDigest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (snapshotId != key.snapshotId) return false;
+            if (!connection.equals(key.connection)) return false;
+            if (stream != null ? !stream.equals(key.stream) : key.stream != null) return false;
+            return filterDigest != null ? filterDigest.equals(key.filterDigest) : key.filterDigest == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = connection.hashCode();
+            result = 31 * result + (stream != null ? stream.hashCode() : 0);
+            result = 31 * result + (int) (snapshotId ^ (snapshotId >>> 32));
+            result = 31 * result + (filterDigest != null ? filterDigest.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return connection + "/" + stream + "@" + snapshotId;
+        }
+
+        /**
+         * Name of the file the entry is spilled to, which does not reveal the stream or credential
+         */
+        String getFileName() {
+            return Util.getDigestOf(connection + "\n" + stream + "\n" + snapshotId + "\n" + filterDigest) + SPILL_FILE_SUFFIX;
+        }
+    }
+
+    /**
+     * Fetches the defects of a snapshot which are not cached
+     */
+    public interface Loader<E extends Exception> {
+        List<CoverityDefect> load() throws E, IOException;
+    }
+
+    private final Cache<Key, DefectTable> cache;
+    /**
+     * Keys whose defects are being fetched, released when the fetch ends
+     */
+    private final ConcurrentMap<Key, CountDownLatch> loads = new ConcurrentHashMap<>();
+    private final File spillDirectory;
+    private final long idleTimeoutMillis;
+
+    protected DefectResultCache() {
+        this(MAX_WEIGHT, IDLE_TIMEOUT, SPILL_DIRECTORY != null ? new File(SPILL_DIRECTORY) : null);
+    }
+
+    protected DefectResultCache(long maxWeight, long idleTimeoutMillis, File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.cache = CacheBuilder.newBuilder()
+            // a single segment, so the maximum weight is not split between segments and large streams still fit
+            .concurrencyLevel(1)
+            .maximumWeight(maxWeight)
+            .weigher(new Weigher<Key, DefectTable>() {
+                @Override
+                public int weigh(Key key, DefectTable defects) {
+                    return Math.max(1, defects.size());
+                }
+            })
+            .expireAfterAccess(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+            .removalListener(new RemovalListener<Key, DefectTable>() {
+                @Override
+                public void onRemoval(RemovalNotification<Key, DefectTable> notification) {
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        spill(notification.getKey(), notification.getValue());
+                    }
+                }
+            })
+            .build();
+    }
+
+    public static DefectResultCache getInstance() {
+        synchronized (DefectResultCache.class) {
+            if (instance == null) {
+                instance = new DefectResultCache();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Returns the cached defects, limited to maxDefects, or null if the defects are not cached. The cached table is
+     * shared, it is immutable.
+     */
+    public List<CoverityDefect> get(Key key, int maxDefects) {
+        DefectTable defects = cache.getIfPresent(key);
+        if (defects == null) {
+            defects = unspill(key);
+            if (defects == null) {
+                return null;
+            }
+            cache.put(key, defects);
+        }
+        return defects.size() > maxDefects ? defects.subList(0, maxDefects) : defects;
+    }
+
+    /**
+     * Returns the cached defects, limited to maxDefects, or fetches them with the loader and caches them when they are
+     * complete, that is when there are fewer than maxDefects. While a build fetches the defects of a key, other builds
+     * wait for it and use its defects, or fetch the defects themselves if it failed or its defects were limited.
+     */
+    public <E extends Exception> List<CoverityDefect> get(Key key, int maxDefects, Loader<E> loader) throws E, IOException {
+        List<CoverityDefect> defects = get(key, maxDefects);
+        if (defects != null) {
+            return defects;
+        }
+
+        final CountDownLatch load = new CountDownLatch(1);
+        final CountDownLatch running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                running.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the defects of " + key);
+            }
+            defects = get(key, maxDefects);
+            return defects != null ? defects : load(key, maxDefects, loader);
+        }
+
+        try {
+            // the defects may have been cached between the first look and taking over the fetch
+            defects = get(key, maxDefects);
+            return defects != null ? defects : load(key, maxDefects, loader);
+        } finally {
+            loads.remove(key);
+            load.countDown();
+        }
+    }
+
+    private <E extends Exception> List<CoverityDefect> load(Key key, int maxDefects, Loader<E> loader) throws E, IOException {
+        final DefectTable defects = DefectTable.of(loader.load());
+        if (defects.size() < maxDefects) {
+            cache.put(key, defects);
+        }
+        return defects;
+    }
+
+    /**
+     * Caches the complete list of defects matching the filters in the snapshot
+     */
+    public void put(Key key, List<CoverityDefect> defects) {
+        cache.put(key, DefectTable.of(defects));
+    }
+
+    /**
+     * Number of defects kept in memory
+     */
+    public long getDefectCount() {
+        cache.cleanUp();
+        long count = 0;
+        for (DefectTable defects : cache.asMap().values()) {
+            count += defects.size();
+        }
+        return count;
+    }
+
+    private void spill(Key key, DefectTable defects) {
+        if (spillDirectory == null) {
+            return;
+        }
+
+        final File file = new File(spillDirectory, key.getFileName());
+        try {
+            if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+                throw new IOException("Unable to create directory " + spillDirectory);
+            }
+            removeExpiredFiles();
+            DefectFile.write(file, defects);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write cached defects for " + key + " to " + file, e);
+            file.delete();
+        }
+    }
+
+    private DefectTable unspill(Key key) {
+        if (spillDirectory == null) {
+            return null;
+        }
+
+        final File file = new File(spillDirectory, key.getFileName());
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return DefectFile.read(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read cached defects for " + key + " from " + file, e);
+            return null;
+        } finally {
+            // the entry is back in memory, or unreadable
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes spilled entries which were not read back within the idle timeout
+     */
+    private void removeExpiredFiles() {
+        final File[] files = spillDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long expired = System.currentTimeMillis() - idleTimeoutMillis;
+        for (File file : files) {
+            if (file.getName().endsWith(SPILL_FILE_SUFFIX) && file.lastModified() < expired) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Fetches the pages of a paged Coverity Connect result. The first page is fetched by the calling thread to learn the
+ * total number of records, the remaining pages are fetched concurrently with bounded parallelism and handed to the
+ * {@link PageListener} in order. Failed page requests are retried, and fetching stops once the time budget is spent.
+ */
+public class ParallelPageFetcher {
+    private static final Logger logger = Logger.getLogger(ParallelPageFetcher.class.getName());
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(
+        new NamingThreadFactory(new DaemonThreadFactory(), "Coverity page fetcher"));
+
+    /**
+     * Requests a single page. Implementations are called from several threads at once and must not share request
+     * state (such as a page spec) between calls.
+     */
+    public interface PageSource<P, E extends Exception> {
+        P fetch(int startIndex, int pageSize) throws E, IOException;
+
+        /**
+         * Total number of records reported by the page
+         */
+        int getTotal(P page);
+
+        /**
+         * Whether a failed page request may succeed when sent again, for example after a communication failure
+         */
+        boolean isRetryable(Exception e);
+    }
+
+    /**
+     * Receives the fetched pages, in order of their start index, on the calling thread
+     */
+    public interface PageListener<P> {
+        void onPage(int startIndex, int total, P page);
+    }
+
+    /**
+     * Chooses the size of the next page from the time it took to fetch the last complete page and its size in bytes
+     */
+    public interface PageSizePolicy {
+        /**
+         * @param pageBytes size of the page in bytes, or -1 when the page does not know its size
+         */
+        int nextPageSize(int pageSize, long elapsedMillis, long pageBytes);
+    }
+
+    /**
+     * A page which knows its size, which the {@link PageSizePolicy} uses in addition to the time taken
+     */
+    public interface SizedPage {
+        long getSizeInBytes();
+    }
+
+    private final int parallelism;
+    private final int maxRetries;
+    private final long timeBudgetMillis;
+    private final PageSizePolicy pageSizePolicy;
+
+    /**
+     * @param parallelism maximum number of pages requested at the same time, 1 fetches the pages one after another
+     * @param maxRetries number of times a failed page request is retried
+     * @param timeBudgetMillis time in milliseconds after which fetching is abandoned
+     */
+    public ParallelPageFetcher(int parallelism, int maxRetries, long timeBudgetMillis) {
+        this(parallelism, maxRetries, timeBudgetMillis, null);
+    }
+
+    /**
+     * @param pageSizePolicy adapts the page size after each page. Pages requested while others are in flight use the
+     *                       size chosen after the last page which was delivered.
+     */
+    public ParallelPageFetcher(int parallelism, int maxRetries, long timeBudgetMillis, PageSizePolicy pageSizePolicy) {
+        this.parallelism = Math.max(1, parallelism);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.pageSizePolicy = pageSizePolicy;
+    }
+
+    /**
+     * Fetches all pages, up to the total number of records reported by the first page or maxRecords, whichever is
+     * lower.
+     *
+     * @param exceptionType the checked exception thrown by the page source, which is rethrown unchanged
+     */
+    public <P, E extends Exception> void fetch(final PageSource<P, E> source, Class<E> exceptionType,
+                                               final int pageSize, int maxRecords, PageListener<P> listener) throws E, IOException {
+        final long deadline = System.currentTimeMillis() + timeBudgetMillis;
+
+        final TimedPage<P> firstPage = fetchTimed(source, 0, Math.min(pageSize, maxRecords), deadline);
+        final int total = Math.min(source.getTotal(firstPage.page), maxRecords);
+        listener.onPage(0, total, firstPage.page);
+        int currentPageSize = nextPageSize(pageSize, firstPage);
+
+        if (parallelism == 1) {
+            int startIndex = pageSize;
+            while (startIndex < total) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException("Timed out after " + timeBudgetMillis + "ms fetching pages");
+                }
+                checkInterrupted();
+                final TimedPage<P> page = fetchTimed(source, startIndex, Math.min(currentPageSize, total - startIndex), deadline);
+                listener.onPage(startIndex, total, page.page);
+                startIndex += page.pageSize;
+                currentPageSize = nextPageSize(currentPageSize, page);
+            }
+            return;
+        }
+
+        final ClassLoader callerClassLoader = Thread.currentThread().getContextClassLoader();
+        final Deque<PendingPage<P>> inFlight = new ArrayDeque<>();
+        int nextStartIndex = pageSize;
+        try {
+            while (nextStartIndex < total || !inFlight.isEmpty()) {
+                // keep a window of pages in flight, so memory use does not grow with the number of pages
+                checkInterrupted();
+                while (nextStartIndex < total && inFlight.size() < parallelism) {
+                    final int startIndex = nextStartIndex;
+                    final int size = Math.min(currentPageSize, total - startIndex);
+                    inFlight.addLast(new PendingPage<>(startIndex, executor.submit(new Callable<TimedPage<P>>() {
+                        @Override
+                        public TimedPage<P> call() throws Exception {
+                            final Thread thread = Thread.currentThread();
+                            final ClassLoader cl = thread.getContextClassLoader();
+                            thread.setContextClassLoader(callerClassLoader);
+                            try {
+                                return fetchTimed(source, startIndex, size, deadline);
+                            } finally {
+                                thread.setContextClassLoader(cl);
+                            }
+                        }
+                    })));
+                    nextStartIndex += size;
+                }
+
+                final PendingPage<P> pending = inFlight.peekFirst();
+                final TimedPage<P> page = await(pending.future, exceptionType, deadline);
+                inFlight.removeFirst();
+                listener.onPage(pending.startIndex, total, page.page);
+                currentPageSize = nextPageSize(currentPageSize, page);
+            }
+        } finally {
+            for (PendingPage<P> pending : inFlight) {
+                pending.future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The size of the pages requested next, which only changes when there is a page size policy
+     */
+    private int nextPageSize(int currentPageSize, TimedPage<?> page) {
+        if (pageSizePolicy == null) {
+            return currentPageSize;
+        }
+        final long pageBytes = page.page instanceof SizedPage ? ((SizedPage)page.page).getSizeInBytes() : -1;
+        return Math.max(1, pageSizePolicy.nextPageSize(page.pageSize, page.elapsedMillis, pageBytes));
+    }
+
+    /**
+     * Stops fetching when the calling thread was interrupted, for example because the build was aborted. Requests in
+     * progress are not interruptible, so this is checked between pages.
+     */
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while fetching pages");
+        }
+    }
+
+    private <P, E extends Exception> P fetchWithRetry(PageSource<P, E> source, int startIndex, int pageSize, long deadline) throws E, IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return source.fetch(startIndex, pageSize);
+            } catch (Exception e) {
+                final long backoff = TimeUnit.SECONDS.toMillis(1) << Math.min(attempt, 5);
+                if (!source.isRetryable(e) || attempt >= maxRetries || System.currentTimeMillis() + backoff >= deadline) {
+                    throw e;
+                }
+                logger.log(Level.WARNING, "Retrying request for page starting at " + startIndex + " after failure", e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while retrying request for page starting at " + startIndex);
+                }
+            }
+        }
+    }
+
+    private <P, E extends Exception> TimedPage<P> fetchTimed(PageSource<P, E> source, int startIndex, int pageSize, long deadline) throws E, IOException {
+        final long started = System.currentTimeMillis();
+        final P page = fetchWithRetry(source, startIndex, pageSize, deadline);
+        return new TimedPage<>(page, pageSize, System.currentTimeMillis() - started);
+    }
+
+    private <P, E extends Exception> P await(Future<P> future, Class<E> exceptionType, long deadline) throws E, IOException {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching pages");
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out after " + timeBudgetMillis + "ms fetching pages", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (exceptionType.isInstance(cause)) {
+                throw exceptionType.cast(cause);
+            } else if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A fetched page with the number of records requested and the time the request took
+     */
+    private static class TimedPage<P> {
+        private final P page;
+        private final int pageSize;
+        private final long elapsedMillis;
+
+        TimedPage(P page, int pageSize, long elapsedMillis) {
+            this.page = page;
+            this.pageSize = pageSize;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    /**
+     * A page which has been requested but not delivered yet
+     */
+    private static class PendingPage<P> {
+        private final int startIndex;
+        private final Future<TimedPage<P>> future;
+
+        PendingPage(int startIndex, Future<TimedPage<P>> future) {
+            this.startIndex = startIndex;
+            this.future = future;
+        }
+    }
+}
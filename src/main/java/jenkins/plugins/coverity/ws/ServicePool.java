@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of web service clients (JAX-WS ports) for a single Coverity Connect instance.
+ * JAX-WS ports and their handler chain are not safe for concurrent use, so each caller checks out a client for
+ * exclusive use and returns it with {@link #checkin(Object)} once finished.
+ * Clients which have been idle for longer than the idle timeout are evicted from the pool.
+ */
+public class ServicePool<T> {
+    private static final Logger logger = Logger.getLogger(ServicePool.class.getName());
+
+    /**
+     * Creates new clients for the pool
+     */
+    public interface Factory<T> {
+        T create() throws IOException;
+    }
+
+    private final Factory<T> factory;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long maxWaitMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleClient<T>> idleClients;
+
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final AtomicInteger evictedCount = new AtomicInteger();
+    private final AtomicLong checkoutCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ServicePool(Factory<T> factory, int maxSize, long idleTimeoutMillis, long maxWaitMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1 but was " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.idleClients = new LinkedBlockingDeque<>();
+    }
+
+    /**
+     * Checks out a client for exclusive use, waiting up to the configured maximum wait time if all clients are in use.
+     * Every client that was checked out must be returned with {@link #checkin(Object)} or {@link #invalidate(Object)}.
+     */
+    public T checkout() throws IOException {
+        checkoutCount.incrementAndGet();
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            final long start = System.nanoTime();
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a Coverity web service client");
+            } finally {
+                recordWait(System.nanoTime() - start);
+            }
+        }
+
+        if (!acquired) {
+            throw new IOException("Timed out after " + maxWaitMillis + "ms waiting for one of " + maxSize +
+                " Coverity web service clients to become available");
+        }
+
+        evictIdle();
+
+        // most recently used client first, so the least used clients become idle and are evicted
+        final IdleClient<T> idleClient = idleClients.pollFirst();
+        if (idleClient != null) {
+            return idleClient.client;
+        }
+
+        try {
+            final T client = factory.create();
+            createdCount.incrementAndGet();
+            return client;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a client which was checked out from this pool so it can be used by other callers
+     */
+    public void checkin(T client) {
+        if (client == null) {
+            return;
+        }
+
+        if (closed) {
+            closeClient(client);
+        } else {
+            idleClients.offerFirst(new IdleClient<>(client, System.currentTimeMillis()));
+            if (closed) {
+                // closed while the client was returned
+                closeIdleClients();
+            }
+        }
+        permits.release();
+    }
+
+    /**
+     * Releases the checked out client without returning it to the pool, for example after a communication failure
+     * which may have left the client in an unusable state.
+     */
+    public void invalidate(T client) {
+        if (client == null) {
+            return;
+        }
+
+        closeClient(client);
+        permits.release();
+    }
+
+    /**
+     * Releases the idle clients. Clients which are checked out remain usable and are released once returned, so
+     * callers holding on to a closed pool keep working, but without reusing clients.
+     */
+    public void close() {
+        closed = true;
+        closeIdleClients();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void closeIdleClients() {
+        IdleClient<T> idleClient;
+        while ((idleClient = idleClients.pollFirst()) != null) {
+            closeClient(idleClient.client);
+        }
+    }
+
+    /**
+     * Removes clients from the pool which have not been used within the idle timeout
+     */
+    public void evictIdle() {
+        final long oldestAllowed = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Iterator<IdleClient<T>> iterator = idleClients.descendingIterator(); iterator.hasNext();) {
+            final IdleClient<T> idleClient = iterator.next();
+            if (idleClient.lastUsed >= oldestAllowed) {
+                // remaining clients were used more recently
+                break;
+            }
+            if (idleClients.removeLastOccurrence(idleClient)) {
+                evictedCount.incrementAndGet();
+                closeClient(idleClient.client);
+            }
+        }
+    }
+
+    /**
+     * Releases the connections held by a client, if the client supports it (JAX-WS ports implement {@link Closeable})
+     */
+    static void closeClient(Object client) {
+        if (client instanceof Closeable) {
+            try {
+                ((Closeable) client).close();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.FINE, "Failed to close web service client", e);
+            }
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        waitCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long currentMax = maxWaitNanos.get();
+        while (waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+            currentMax = maxWaitNanos.get();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of clients currently checked out
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Number of clients available in the pool without creating a new client
+     */
+    public int getIdleCount() {
+        return idleClients.size();
+    }
+
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public int getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getCheckoutCount() {
+        return checkoutCount.get();
+    }
+
+    /**
+     * Number of callers waiting for a client right now
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Number of checkouts which had to wait for another caller to return a client
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getAverageWaitMillis() {
+        final long waits = waitCount.get();
+        return waits > 0 ? getTotalWaitMillis() / waits : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ServicePool{" +
+            "maxSize=" + maxSize +
+            ", active=" + getActiveCount() +
+            ", idle=" + getIdleCount() +
+            ", created=" + getCreatedCount() +
+            ", evicted=" + getEvictedCount() +
+            ", checkouts=" + getCheckoutCount() +
+            ", waits=" + getWaitCount() +
+            ", averageWaitMillis=" + getAverageWaitMillis() +
+            ", maxWaitMillis=" + getMaxWaitMillis() +
+            ", closed=" + closed +
+            '}';
+    }
+
+    private static class IdleClient<T> {
+        private final T client;
+        private final long lastUsed;
+
+        public IdleClient(T client, long lastUsed) {
+            this.client = client;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.ws.WebServiceException;
+
+import com.coverity.ws.v9.CovRemoteServiceException;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.GetMergedDefectsForStreams;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * Requests merged defects from the Defect service and reads the SOAP response as a stream of XML events. Only the
+ * fields shown for a build are kept, so the rest of each merged defect (attribute values, dates, detection details)
+ * is never unmarshalled.
+ */
+public class StreamingDefectService {
+    private static final String SOAP_ENVELOPE_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String PASSWORD_TEXT_TYPE =
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-username-token-profile-1.0#PasswordText";
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private static JAXBContext jaxbContext;
+
+    private final URL endpoint;
+    private final String userName;
+    private final String password;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    public StreamingDefectService(URL endpoint, String userName, String password, int connectTimeout, int readTimeout) {
+        this.endpoint = endpoint;
+        this.userName = userName;
+        this.password = password;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Same request as {@link com.coverity.ws.v9.DefectService#getMergedDefectsForStreams}, returning only the
+     * projected defects and the total number of records
+     */
+    public DefectPage getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec,
+                                                 PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws IOException, CovRemoteServiceException_Exception {
+        final GetMergedDefectsForStreams request = new GetMergedDefectsForStreams();
+        request.getStreamIds().addAll(streamIds);
+        request.setFilterSpec(filterSpec);
+        request.setPageSpec(pageSpec);
+        request.setSnapshotScope(snapshotScope);
+
+        final HttpURLConnection connection = (HttpURLConnection)endpoint.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+        connection.setRequestProperty("SOAPAction", "\"\"");
+
+        try (OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
+            writeRequest(out, request);
+        }
+
+        final int responseCode = connection.getResponseCode();
+        // faults are sent with an internal server error status
+        final InputStream responseStream = responseCode == HttpURLConnection.HTTP_OK ? connection.getInputStream() :
+            responseCode == HttpURLConnection.HTTP_INTERNAL_ERROR ? connection.getErrorStream() : null;
+        if (responseStream == null) {
+            throw new IOException("The server sent HTTP status code " + responseCode + ": " + connection.getResponseMessage());
+        }
+
+        try (InputStream in = new BufferedInputStream(responseStream)) {
+            final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                return readResponse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read merged defects response from " + endpoint, e);
+        }
+    }
+
+    /**
+     * Writes the SOAP envelope with a ws-security username token, matching the header added by
+     * {@link ClientAuthenticationHandlerWSS}
+     */
+    void writeRequest(OutputStream out, GetMergedDefectsForStreams request) throws IOException {
+        try {
+            final XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("soapenv", "Envelope", SOAP_ENVELOPE_NAMESPACE);
+            writer.writeNamespace("soapenv", SOAP_ENVELOPE_NAMESPACE);
+
+            writer.writeStartElement("soapenv", "Header", SOAP_ENVELOPE_NAMESPACE);
+            writer.writeStartElement(ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, ClientAuthenticationHandlerWSS.WSS_AUTH_LNAME,
+                ClientAuthenticationHandlerWSS.WSS_AUTH_URI);
+            writer.writeNamespace(ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, ClientAuthenticationHandlerWSS.WSS_AUTH_URI);
+            writer.writeAttribute("soapenv", SOAP_ENVELOPE_NAMESPACE, "mustUnderstand", "1");
+            writer.writeStartElement(ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, "UsernameToken", ClientAuthenticationHandlerWSS.WSS_AUTH_URI);
+            writer.writeStartElement(ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, "Username", ClientAuthenticationHandlerWSS.WSS_AUTH_URI);
+            writer.writeCharacters(userName);
+            writer.writeEndElement();
+            writer.writeStartElement(ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, "Password", ClientAuthenticationHandlerWSS.WSS_AUTH_URI);
+            writer.writeAttribute("Type", PASSWORD_TEXT_TYPE);
+            writer.writeCharacters(password);
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
+
+            writer.writeStartElement("soapenv", "Body", SOAP_ENVELOPE_NAMESPACE);
+            final Marshaller marshaller = getJaxbContext().createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            marshaller.marshal(new JAXBElement<>(new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getMergedDefectsForStreams"),
+                GetMergedDefectsForStreams.class, request), writer);
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Unable to write merged defects request", e);
+        }
+    }
+
+    /**
+     * Reads a getMergedDefectsForStreams response, keeping only the projected fields of each merged defect
+     */
+    static DefectPage readResponse(XMLStreamReader reader) throws XMLStreamException, CovRemoteServiceException_Exception {
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if ("Fault".equals(reader.getLocalName()) && SOAP_ENVELOPE_NAMESPACE.equals(reader.getNamespaceURI())) {
+                readFault(reader);
+            } else if ("return".equals(reader.getLocalName())) {
+                return readPage(reader);
+            }
+        }
+        throw new XMLStreamException("Response does not contain merged defects");
+    }
+
+    private static DefectPage readPage(XMLStreamReader reader) throws XMLStreamException {
+        int totalNumberOfRecords = 0;
+        final List<CoverityDefect> defects = new ArrayList<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "mergedDefects":
+                    defects.add(readDefect(reader));
+                    break;
+                case "totalNumberOfRecords":
+                    final String total = readText(reader);
+                    totalNumberOfRecords = total != null ? Integer.parseInt(total.trim()) : 0;
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return new DefectPage(totalNumberOfRecords, defects);
+    }
+
+    private static CoverityDefect readDefect(XMLStreamReader reader) throws XMLStreamException {
+        Long cid = null;
+        String checkerName = null;
+        String functionDisplayName = null;
+        String filePathname = null;
+        String componentName = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "cid":
+                    final String text = readText(reader);
+                    cid = text != null ? Long.valueOf(text.trim()) : null;
+                    break;
+                case "checkerName":
+                    checkerName = readText(reader);
+                    break;
+                case "functionDisplayName":
+                    functionDisplayName = readText(reader);
+                    break;
+                case "filePathname":
+                    filePathname = readText(reader);
+                    break;
+                case "componentName":
+                    componentName = readText(reader);
+                    break;
+                default:
+                    // other fields, including nested ones which may have their own cid, are not kept
+                    skipElement(reader);
+            }
+        }
+        return new CoverityDefect(cid, checkerName, functionDisplayName, filePathname, componentName);
+    }
+
+    /**
+     * Throws the Coverity fault from the detail of the SOAP fault, the same way the generated client does
+     */
+    private static void readFault(XMLStreamReader reader) throws XMLStreamException, CovRemoteServiceException_Exception {
+        String faultString = null;
+        CovRemoteServiceException faultInfo = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "faultstring":
+                    faultString = readText(reader);
+                    break;
+                case "detail":
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if ("CoverityFault".equals(reader.getLocalName())) {
+                            faultInfo = readCoverityFault(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+
+        if (faultInfo != null) {
+            throw new CovRemoteServiceException_Exception(faultString, faultInfo);
+        }
+        throw new WebServiceException(faultString);
+    }
+
+    private static CovRemoteServiceException readCoverityFault(XMLStreamReader reader) throws XMLStreamException {
+        final CovRemoteServiceException faultInfo = new CovRemoteServiceException();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "errorCode":
+                    final String errorCode = readText(reader);
+                    if (errorCode != null) {
+                        faultInfo.setErrorCode(Integer.parseInt(errorCode.trim()));
+                    }
+                    break;
+                case "message":
+                    faultInfo.setMessage(readText(reader));
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return faultInfo;
+    }
+
+    /**
+     * Text of the current element, or null when the element is nil
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        final boolean nil = "true".equals(reader.getAttributeValue(XSI_NAMESPACE, "nil"));
+        final String text = reader.getElementText();
+        return nil ? null : text;
+    }
+
+    /**
+     * Moves past the end of the current element without reading its contents
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(GetMergedDefectsForStreams.class);
+        }
+        return jaxbContext;
+    }
+}
@@ -10,43 +10,33 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import jenkins.plugins.coverity.CoverityDefect;
 
+/**
+ * A page of a Coverity Connect issues view, with each row projected into a {@link CoverityDefect}
+ */
 public class ViewContents {
     private final Long totalRows;
     private final Long rowsOffset;
     private final List<String> columns;
-    private final List<Map<String, Object>> rows;
+    private final List<CoverityDefect> defects;
 
-    public ViewContents(JSONObject viewContentsV1) {
-        totalRows = (Long)viewContentsV1.get("totalRows");
-        rowsOffset = (Long)viewContentsV1.get("offset");
-
-        columns = new ArrayList<>();
-        final JSONArray viewColumns = (JSONArray)viewContentsV1.get("columns");
-        for (Object column : viewColumns) {
-            JSONObject jsonColumns = (JSONObject)column;
-            columns.add((String)jsonColumns.get("name"));
-        }
+    public ViewContents(Long totalRows, Long rowsOffset, List<String> columns, List<CoverityDefect> defects) {
+        this.totalRows = totalRows;
+        this.rowsOffset = rowsOffset;
+        this.columns = columns;
+        this.defects = defects;
+    }
 
-        rows = new ArrayList<>();
-        final JSONArray viewRows = (JSONArray)viewContentsV1.get("rows");
-        for (Object row : viewRows) {
-            JSONObject jsonRow = (JSONObject)row;
-            Map<String, Object> rowDetail = new HashMap<>();
-            for (Iterator iterator = jsonRow.entrySet().iterator(); iterator.hasNext();) {
-                Map.Entry entry = (Map.Entry)iterator.next();
-                rowDetail.put(String.valueOf(entry.getKey()), entry.getValue());
-            }
-            rows.add(rowDetail);
-        }
+    static CoverityDefect toDefect(Object cid, Object checker, Object displayFunction, Object displayFile, Object displayComponent) {
+        return new CoverityDefect(
+            cid != null ? Long.parseLong(cid.toString()) : null,
+            checker != null ? checker.toString() : null,
+            displayFunction != null ? displayFunction.toString() : null,
+            displayFile != null ? displayFile.toString() : null,
+            displayComponent != null ? displayComponent.toString() : null);
     }
 
     public Long getTotalRows() {
@@ -61,7 +51,7 @@ public class ViewContents {
         return columns;
     }
 
-    public List<Map<String, Object>> getRows() {
-        return rows;
+    public List<CoverityDefect> getDefects() {
+        return defects;
     }
 }
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * Decodes a Views Service view contents response token by token. Each row is projected into a
+ * {@link CoverityDefect} as soon as it has been read, without building a JSON tree or a map per row.
+ */
+public class ViewContentsDecoder implements ContentHandler {
+
+    /**
+     * Receives each row of the view as it is decoded
+     */
+    public interface RowHandler {
+        void onRow(CoverityDefect defect);
+    }
+
+    private static final String VIEW_CONTENTS = "viewContentsV1";
+
+    // nesting of objects and arrays: response object, viewContentsV1 object, columns/rows array, column/row object
+    private static final int ENTRY_DEPTH = 2;
+    private static final int ROW_DEPTH = 4;
+
+    private final RowHandler rowHandler;
+    private final List<String> keys = new ArrayList<>();
+    private int depth;
+
+    private long totalRows;
+    private long offset;
+    private final List<String> columns = new ArrayList<>();
+
+    private Object cid;
+    private Object checker;
+    private Object displayFunction;
+    private Object displayFile;
+    private Object displayComponent;
+
+    public ViewContentsDecoder(RowHandler rowHandler) {
+        this.rowHandler = rowHandler;
+    }
+
+    /**
+     * Decodes the view contents response, collecting the rows as {@link CoverityDefect}s
+     */
+    public static ViewContents decode(Reader reader) throws IOException, ParseException {
+        final List<CoverityDefect> defects = new ArrayList<>();
+        final ViewContentsDecoder decoder = new ViewContentsDecoder(new RowHandler() {
+            @Override
+            public void onRow(CoverityDefect defect) {
+                defects.add(defect);
+            }
+        });
+        decoder.parse(reader);
+        return new ViewContents(decoder.totalRows, decoder.offset, decoder.columns, defects);
+    }
+
+    /**
+     * Decodes the view contents response, passing each row to the row handler
+     */
+    public void parse(Reader reader) throws IOException, ParseException {
+        new JSONParser().parse(reader, this);
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        if (depth == ROW_DEPTH && isEntry("rows")) {
+            cid = checker = displayFunction = displayFile = displayComponent = null;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        if (depth == ROW_DEPTH && isEntry("rows")) {
+            rowHandler.onRow(ViewContents.toDefect(cid, checker, displayFunction, displayFile, displayComponent));
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        keys.add(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        keys.remove(keys.size() - 1);
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        depth++;
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (depth == ENTRY_DEPTH && keys.size() == 2 && VIEW_CONTENTS.equals(keys.get(0))) {
+            if ("totalRows".equals(keys.get(1)) && value instanceof Number) {
+                totalRows = ((Number)value).longValue();
+            } else if ("offset".equals(keys.get(1)) && value instanceof Number) {
+                offset = ((Number)value).longValue();
+            }
+        } else if (depth == ROW_DEPTH && keys.size() == 3) {
+            final String key = keys.get(2);
+            if (isEntry("rows")) {
+                switch (key) {
+                    case "cid":
+                        cid = value;
+                        break;
+                    case "checker":
+                        checker = value;
+                        break;
+                    case "displayFunction":
+                        displayFunction = value;
+                        break;
+                    case "displayFile":
+                        displayFile = value;
+                        break;
+                    case "displayComponent":
+                        displayComponent = value;
+                        break;
+                    default:
+                        // other columns are not kept
+                }
+            } else if (isEntry("columns") && "name".equals(key) && value != null) {
+                columns.add(value.toString());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the parser is within the given entry of the viewContentsV1 object
+     */
+    private boolean isEntry(String entry) {
+        return keys.size() >= 2 && VIEW_CONTENTS.equals(keys.get(0)) && entry.equals(keys.get(1));
+    }
+}
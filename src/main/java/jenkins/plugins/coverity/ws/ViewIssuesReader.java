@@ -12,6 +12,7 @@ package jenkins.plugins.coverity.ws;
 
 
 import java.io.PrintStream;
+import java.text.MessageFormat;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -44,9 +45,22 @@ public class ViewIssuesReader {
         CIMInstance instance = publisher.getInstance();
 
         if (instance != null) {
-            List<CoverityDefect> issuesFromView = instance.getIssuesVorView(publisher.getProjectId(), publisher.getConnectView(), outputLogger);
+            final CoverityBuildAction action;
+            if (publisher.isGateOnly()) {
+                // the total number of issues decides the result, so only the first page is read
+                final ViewContents sample = instance.getIssueSampleForView(publisher.getProjectId(), publisher.getConnectView(),
+                    publisher.getEffectiveSampleSize(), outputLogger);
+                final int issueCount = sample.getTotalRows() != null ? sample.getTotalRows().intValue() : 0;
+                outputLogger.println(MessageFormat.format("[Coverity] Found {0} issues for project \"{1}\" and view \"{2}\", keeping {3} of them",
+                    issueCount, publisher.getProjectId(), publisher.getConnectView(), sample.getDefects().size()));
 
-            CoverityBuildAction action = new CoverityBuildAction(run, publisher.getProjectId(), publisher.getConnectView(), publisher.getConnectInstance(), issuesFromView);
+                action = new CoverityBuildAction(run, publisher.getProjectId(), publisher.getConnectView(), publisher.getConnectInstance(),
+                    sample.getDefects(), issueCount);
+            } else {
+                List<CoverityDefect> issuesFromView = instance.getIssuesVorView(publisher.getProjectId(), publisher.getConnectView(), outputLogger);
+
+                action = new CoverityBuildAction(run, publisher.getProjectId(), publisher.getConnectView(), publisher.getConnectInstance(), issuesFromView);
+            }
             run.addAction(action);
 
             String rootUrl = Jenkins.getInstance().getRootUrl();
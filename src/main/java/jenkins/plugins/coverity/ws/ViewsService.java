@@ -10,11 +10,17 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
 import javax.ws.rs.core.UriBuilder;
@@ -25,21 +31,32 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
 /**
  * Service for interacting with the Coverity Connect Views Service JSON API
  */
-public class ViewsService {
+public class ViewsService implements Closeable {
     private static final Logger logger = Logger.getLogger(ViewsService.class.getName());
 
     private final URL coverityConnectUrl;
     private final Client restClient;
+    private final Semaphore connections;
 
     public ViewsService(URL coverityConnectUrl, Client restClient) {
+        this(coverityConnectUrl, restClient, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxConnections the maximum number of requests to run concurrently, additional requests wait for a
+     *                       connection to be released
+     */
+    public ViewsService(URL coverityConnectUrl, Client restClient, int maxConnections) {
         this.coverityConnectUrl = coverityConnectUrl;
         this.restClient = restClient;
+        this.connections = new Semaphore(maxConnections, true);
     }
 
     /**
@@ -54,7 +71,13 @@ public class ViewsService {
                 .path("api/views/v1");
 
             WebResource resource = restClient.resource(uriBuilder.build());
-            String response = resource.get(String.class);
+            String response;
+            connections.acquireUninterruptibly();
+            try {
+                response = resource.get(String.class);
+            } finally {
+                connections.release();
+            }
             JSONParser parser = new JSONParser();
             json = (JSONObject)parser.parse(response);
         } catch (ParseException | URISyntaxException e) {
@@ -78,7 +101,12 @@ public class ViewsService {
         return views;
     }
 
-    public ViewContents getViewContents(String projectId, String connectView, int pageSize, int offset) {
+    /**
+     * Returns a page of the contents of a view. A response which cannot be decoded, for example because it was cut
+     * off, fails instead of returning fewer rows than the view has.
+     */
+    public ViewContents getViewContents(String projectId, String connectView, int pageSize, int offset) throws IOException {
+        final URI viewContentsUri;
         try {
             final UriBuilder uriBuilder = UriBuilder.fromUri(coverityConnectUrl.toURI())
                 .path("api/viewContents/issues/v1/")
@@ -86,12 +114,17 @@ public class ViewsService {
                 .queryParam("projectId", projectId)
                 .queryParam("rowCount", pageSize)
                 .queryParam("offset", offset);
+            viewContentsUri = uriBuilder.build();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid Coverity Connect URL " + coverityConnectUrl, e);
+        }
+        logger.info("Retrieving View contents from " + viewContentsUri);
 
-            final URI viewContentsUri = uriBuilder.build();
-            logger.info("Retrieving View contents from " + viewContentsUri);
-
-            WebResource resource = restClient.resource(viewContentsUri);
+        WebResource resource = restClient.resource(viewContentsUri);
 
+        connections.acquireUninterruptibly();
+        try {
+            // the entity is always read completely, which returns the connection to the keep-alive cache
             ClientResponse response = resource.get(ClientResponse.class);
             if (response.getStatus() != 200) {
                 throw new RuntimeException("GET " + viewContentsUri +
@@ -99,15 +132,24 @@ public class ViewsService {
                     ": " + response.getEntity(String.class));
             }
 
-            String output = response.getEntity(String.class);
-            JSONParser parser = new JSONParser();
-            JSONObject json = (JSONObject)parser.parse(output);
-
-            return new ViewContents((JSONObject)json.get("viewContentsV1"));
-
-        } catch (ParseException | URISyntaxException e) {
-            logger.throwing(ViewsService.class.getName(), "getViews", e);
-            return new ViewContents(new JSONObject());
+            // decode the rows while reading the response, without holding the whole response in memory
+            try (Reader reader = new InputStreamReader(response.getEntityInputStream(), StandardCharsets.UTF_8)) {
+                return ViewContentsDecoder.decode(reader);
+            } catch (ParseException e) {
+                throw new IOException("Unable to decode the response of GET " + viewContentsUri, e);
+            } catch (IOException e) {
+                throw new ClientHandlerException(e);
+            }
+        } finally {
+            connections.release();
         }
     }
+
+    /**
+     * Releases the connections held by the REST client
+     */
+    @Override
+    public void close() {
+        restClient.destroy();
+    }
 }
@@ -10,36 +10,58 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
 import javax.xml.namespace.QName;
 import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Service;
 import javax.xml.ws.handler.Handler;
+import javax.xml.ws.soap.SOAPBinding;
 
 import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.ConfigurationServiceService;
 import com.coverity.ws.v9.DefectService;
 import com.coverity.ws.v9.DefectServiceService;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.plugins.coverity.CIMInstance;
+import jenkins.util.Timer;
 
 /**
  * Factory for creating or getting web services
@@ -55,13 +77,106 @@ public class WebServiceFactory {
 
     public static final String CONFIGURATION_SERVICE_V9_WSDL = "/ws/v9/configurationservice?wsdl";
 
-    private Map<CIMInstance, DefectService> defectServiceMap;
+    public static final String DEFECT_SERVICE_V9_ENDPOINT = "/ws/v9/defectservice";
 
-    private Map<CIMInstance, ConfigurationService> configurationServiceMap;
+    public static final String CONFIGURATION_SERVICE_V9_ENDPOINT = "/ws/v9/configurationservice";
+
+    /**
+     * Fetch and parse the WSDL from the server when creating web service clients instead of using the service model
+     * of the generated v9 client classes
+     */
+    public static final boolean FETCH_WSDL = Boolean.getBoolean(WebServiceFactory.class.getName() + ".fetchWsdl");
+
+    /**
+     * Maximum number of web service clients per service type for each Coverity Connect instance
+     */
+    public static final int POOL_MAX_SIZE = Integer.getInteger(WebServiceFactory.class.getName() + ".poolMaxSize", 8);
+
+    /**
+     * Time in milliseconds a pooled web service client may be idle before it is evicted
+     */
+    public static final long POOL_IDLE_TIMEOUT = Long.getLong(WebServiceFactory.class.getName() + ".poolIdleTimeout", TimeUnit.MINUTES.toMillis(10));
+
+    /**
+     * Time in milliseconds to wait for a pooled web service client to become available
+     */
+    public static final long POOL_MAX_WAIT = Long.getLong(WebServiceFactory.class.getName() + ".poolMaxWait", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Time in milliseconds to wait for a web service client to be created, which may include fetching and parsing the WSDL
+     */
+    public static final long CREATION_TIMEOUT = Long.getLong(WebServiceFactory.class.getName() + ".creationTimeout", TimeUnit.MINUTES.toMillis(2));
+
+    /**
+     * Clients are created on separate threads so a slow or unreachable server only blocks the callers waiting for
+     * that instance, and those callers can give up after {@link #CREATION_TIMEOUT}.
+     */
+    private final ExecutorService creationExecutor = Executors.newCachedThreadPool(
+        new NamingThreadFactory(new DaemonThreadFactory(), "Coverity web service client creation"));
+
+    /**
+     * Maximum number of Coverity Connect connections (server and credential) for which web service clients are cached
+     */
+    public static final int CACHE_MAX_SIZE = Integer.getInteger(WebServiceFactory.class.getName() + ".cacheMaxSize", 64);
+
+    /**
+     * Time in milliseconds after which the web service clients of an unused connection are released
+     */
+    public static final long CACHE_IDLE_TIMEOUT = Long.getLong(WebServiceFactory.class.getName() + ".cacheIdleTimeout", TimeUnit.MINUTES.toMillis(30));
+
+    /**
+     * Time in milliseconds a shared web service client is kept open after it was evicted from the cache, so requests
+     * of builds which got the client before it was evicted can complete. Pooled clients are released once returned.
+     */
+    public static final long RELEASE_DELAY = Long.getLong(WebServiceFactory.class.getName() + ".releaseDelay", TimeUnit.MINUTES.toMillis(10));
+
+    /**
+     * Time in milliseconds to wait for a connection to the Views Service REST API
+     */
+    public static final int REST_CONNECT_TIMEOUT = Integer.getInteger(WebServiceFactory.class.getName() + ".restConnectTimeout", (int)TimeUnit.MINUTES.toMillis(1));
+
+    /**
+     * Time in milliseconds to wait for a response from the Views Service REST API
+     */
+    public static final int REST_READ_TIMEOUT = Integer.getInteger(WebServiceFactory.class.getName() + ".restReadTimeout", (int)TimeUnit.MINUTES.toMillis(10));
+
+    /**
+     * Maximum number of concurrent Views Service requests per instance. The default matches the number of idle
+     * connections per destination the JDK keeps alive (http.maxConnections), so every request can reuse a socket.
+     */
+    public static final int REST_MAX_CONNECTIONS = Integer.getInteger(WebServiceFactory.class.getName() + ".restMaxConnections",
+        Integer.getInteger("http.maxConnections", 5));
+
+    private final Cache<ConnectionKey, Future<DefectService>> defectServiceMap;
+
+    private final Cache<ConnectionKey, Future<ConfigurationService>> configurationServiceMap;
+
+    private final Cache<ConnectionKey, ServicePool<DefectService>> defectServicePoolMap;
+
+    private final Cache<ConnectionKey, ServicePool<ConfigurationService>> configurationServicePoolMap;
+
+    private final Cache<ConnectionKey, ViewsService> viewsServiceMap;
+
+    private final Cache<ConnectionKey, StreamingDefectService> streamingDefectServiceMap;
+
+    private final long releaseDelayMillis;
 
     protected WebServiceFactory() {
-        this.defectServiceMap = new HashMap<>();
-        this.configurationServiceMap = new HashMap<>();
+        this(CACHE_MAX_SIZE, CACHE_IDLE_TIMEOUT);
+    }
+
+    protected WebServiceFactory(int cacheMaxSize, long cacheIdleTimeoutMillis) {
+        this(cacheMaxSize, cacheIdleTimeoutMillis, RELEASE_DELAY);
+    }
+
+    protected WebServiceFactory(int cacheMaxSize, long cacheIdleTimeoutMillis, long releaseDelayMillis) {
+        this.releaseDelayMillis = releaseDelayMillis;
+        this.defectServiceMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
+        this.configurationServiceMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
+        this.defectServicePoolMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
+        this.configurationServicePoolMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
+        this.viewsServiceMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
+        this.streamingDefectServiceMap = createClientCache(cacheMaxSize, cacheIdleTimeoutMillis);
     }
 
     public static WebServiceFactory getInstance() {
@@ -79,28 +194,55 @@ public class WebServiceFactory {
     /**
      * Returns a Defect service client using v9 web services.
      */
-    public DefectService getDefectService(CIMInstance cimInstance) throws IOException {
-        DefectService defectService;
-        synchronized(this) {
-            if(!defectServiceMap.containsKey(cimInstance)) {
-                defectService = createDefectService(cimInstance);
-                defectServiceMap.put(cimInstance, defectService);
+    public DefectService getDefectService(final CIMInstance cimInstance) throws IOException {
+        return getOrCreate(defectServiceMap.asMap(), cimInstance, new Callable<DefectService>() {
+            @Override
+            public DefectService call() throws IOException {
+                return createDefectService(cimInstance);
             }
-            else {
-                defectService = defectServiceMap.get(cimInstance);
+        });
+    }
+
+    /**
+     * Returns the pool of Defect service clients using v9 web services. Each client checked out of the pool is used
+     * exclusively by the caller, allowing concurrent builds to fetch defects from the same instance in parallel.
+     */
+    public ServicePool<DefectService> getDefectServicePool(final CIMInstance cimInstance) {
+        final ConnectionKey key = ConnectionKey.of(cimInstance);
+        ServicePool<DefectService> pool = defectServicePoolMap.getIfPresent(key);
+        if (pool == null) {
+            pool = new ServicePool<>(new ServicePool.Factory<DefectService>() {
+                @Override
+                public DefectService create() throws IOException {
+                    return createWithTimeout(cimInstance, new Callable<DefectService>() {
+                        @Override
+                        public DefectService call() throws IOException {
+                            return createDefectService(cimInstance);
+                        }
+                    });
+                }
+            }, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT, POOL_MAX_WAIT);
+            final ServicePool<DefectService> existingPool = defectServicePoolMap.asMap().putIfAbsent(key, pool);
+            if (existingPool != null) {
+                pool = existingPool;
             }
         }
-        return defectService;
+        return pool;
     }
 
     protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
-        DefectServiceService defectServiceService = new DefectServiceService(
-            new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL),
-            new QName(COVERITY_V9_NAMESPACE, "DefectServiceService"));
-
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            DefectService defectService = defectServiceService.getDefectServicePort();
+            DefectService defectService;
+            if (FETCH_WSDL) {
+                DefectServiceService defectServiceService = new DefectServiceService(
+                    new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL),
+                    new QName(COVERITY_V9_NAMESPACE, "DefectServiceService"));
+                defectService = defectServiceService.getDefectServicePort();
+            } else {
+                defectService = createPort(DefectService.class, "DefectServiceService", "DefectServicePort",
+                    new URL(getURL(cimInstance), DEFECT_SERVICE_V9_ENDPOINT));
+            }
             attachAuthenticationHandler((BindingProvider) defectService, cimInstance);
 
             return defectService;
@@ -109,31 +251,76 @@ public class WebServiceFactory {
         }
     }
 
+    /**
+     * Returns a Defect service client which reads merged defects from the response stream, keeping only the fields
+     * shown for a build.
+     */
+    public StreamingDefectService getStreamingDefectService(final CIMInstance cimInstance) throws MalformedURLException {
+        try {
+            return streamingDefectServiceMap.get(ConnectionKey.of(cimInstance), new Callable<StreamingDefectService>() {
+                @Override
+                public StreamingDefectService call() throws MalformedURLException {
+                    return new StreamingDefectService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_ENDPOINT),
+                        cimInstance.getCoverityUser(), cimInstance.getCoverityPassword(), REST_CONNECT_TIMEOUT, REST_READ_TIMEOUT);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), MalformedURLException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
     /**
      * Returns a Configuration service client using v9 web services.
      */
-    public ConfigurationService getConfigurationService(CIMInstance cimInstance) throws IOException {
-        ConfigurationService configurationService;
-        synchronized (this){
-            if(!configurationServiceMap.containsKey(cimInstance)) {
-                configurationService = createConfigurationService(cimInstance);
-                configurationServiceMap.put(cimInstance, configurationService);
+    public ConfigurationService getConfigurationService(final CIMInstance cimInstance) throws IOException {
+        return getOrCreate(configurationServiceMap.asMap(), cimInstance, new Callable<ConfigurationService>() {
+            @Override
+            public ConfigurationService call() throws IOException {
+                return createConfigurationService(cimInstance);
             }
-            else {
-                configurationService = configurationServiceMap.get(cimInstance);
+        });
+    }
+
+    /**
+     * Returns the pool of Configuration service clients using v9 web services.
+     */
+    public ServicePool<ConfigurationService> getConfigurationServicePool(final CIMInstance cimInstance) {
+        final ConnectionKey key = ConnectionKey.of(cimInstance);
+        ServicePool<ConfigurationService> pool = configurationServicePoolMap.getIfPresent(key);
+        if (pool == null) {
+            pool = new ServicePool<>(new ServicePool.Factory<ConfigurationService>() {
+                @Override
+                public ConfigurationService create() throws IOException {
+                    return createWithTimeout(cimInstance, new Callable<ConfigurationService>() {
+                        @Override
+                        public ConfigurationService call() throws IOException {
+                            return createConfigurationService(cimInstance);
+                        }
+                    });
+                }
+            }, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT, POOL_MAX_WAIT);
+            final ServicePool<ConfigurationService> existingPool = configurationServicePoolMap.asMap().putIfAbsent(key, pool);
+            if (existingPool != null) {
+                pool = existingPool;
             }
         }
-        return configurationService;
+        return pool;
     }
 
     protected ConfigurationService createConfigurationService(CIMInstance cimInstance) throws MalformedURLException {
-        ConfigurationServiceService configurationServiceService = new ConfigurationServiceService(
-            new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_WSDL),
-            new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService"));
-
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            ConfigurationService configurationService = configurationServiceService.getConfigurationServicePort();
+            ConfigurationService configurationService;
+            if (FETCH_WSDL) {
+                ConfigurationServiceService configurationServiceService = new ConfigurationServiceService(
+                    new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_WSDL),
+                    new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService"));
+                configurationService = configurationServiceService.getConfigurationServicePort();
+            } else {
+                configurationService = createPort(ConfigurationService.class, "ConfigurationServiceService",
+                    "ConfigurationServicePort", new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_ENDPOINT));
+            }
             attachAuthenticationHandler((BindingProvider) configurationService, cimInstance);
 
             return configurationService;
@@ -143,21 +330,155 @@ public class WebServiceFactory {
     }
 
     /**
-     * Returns a new Views Service client
+     * Creates a port using the service model described by the annotations of the generated service endpoint
+     * interface, so no WSDL has to be fetched from the server. Only the endpoint address points at the instance.
+     */
+    private <T> T createPort(Class<T> serviceEndpointInterface, String serviceName, String portName, URL endpoint) {
+        final Service service = Service.create(new QName(COVERITY_V9_NAMESPACE, serviceName));
+        final QName portQName = new QName(COVERITY_V9_NAMESPACE, portName);
+        service.addPort(portQName, SOAPBinding.SOAP11HTTP_BINDING, endpoint.toString());
+        return service.getPort(portQName, serviceEndpointInterface);
+    }
+
+    /**
+     * Returns the client cached for the connection of the instance, creating it if required. Only callers asking for
+     * the same connection wait for the creation, so an unreachable server does not block clients for other instances.
+     */
+    private <T> T getOrCreate(ConcurrentMap<ConnectionKey, Future<T>> clients, CIMInstance cimInstance, Callable<T> creator) throws IOException {
+        final ConnectionKey key = ConnectionKey.of(cimInstance);
+        Future<T> future = clients.get(key);
+        if (future == null) {
+            final FutureTask<T> creation = new FutureTask<>(withContextClassLoader(creator));
+            future = clients.putIfAbsent(key, creation);
+            if (future == null) {
+                future = creation;
+                creationExecutor.execute(creation);
+            }
+        }
+
+        try {
+            return await(future, cimInstance);
+        } catch (IOException | RuntimeException e) {
+            // failed creations are not cached, the next caller will try again
+            clients.remove(key, future);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a cache of clients bounded by size and idle time, which releases the clients it evicts
+     */
+    private <V> Cache<ConnectionKey, V> createClientCache(int maxSize, long idleTimeoutMillis) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+            .removalListener(new ReleasingRemovalListener<V>(releaseDelayMillis))
+            .build();
+    }
+
+    /**
+     * Number of connections with cached clients, for all service types
+     */
+    public long getCachedConnectionCount() {
+        defectServiceMap.cleanUp();
+        configurationServiceMap.cleanUp();
+        defectServicePoolMap.cleanUp();
+        configurationServicePoolMap.cleanUp();
+        viewsServiceMap.cleanUp();
+        streamingDefectServiceMap.cleanUp();
+        return defectServiceMap.size() + configurationServiceMap.size() +
+            defectServicePoolMap.size() + configurationServicePoolMap.size() + viewsServiceMap.size() +
+            streamingDefectServiceMap.size();
+    }
+
+    /**
+     * Creates a new client, giving up after {@link #CREATION_TIMEOUT}
+     */
+    private <T> T createWithTimeout(CIMInstance cimInstance, Callable<T> creator) throws IOException {
+        final FutureTask<T> creation = new FutureTask<>(withContextClassLoader(creator));
+        creationExecutor.execute(creation);
+        return await(creation, cimInstance);
+    }
+
+    private <T> T await(Future<T> future, CIMInstance cimInstance) throws IOException {
+        try {
+            return future.get(CREATION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while creating web service client for " +
+                cimInstance.getHost() + ":" + cimInstance.getPort());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("Timed out after " + CREATION_TIMEOUT + "ms creating web service client for " +
+                cimInstance.getHost() + ":" + cimInstance.getPort(), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Runs the creator with the context class loader of the calling thread, which JAX-WS uses to find its provider
+     */
+    private <T> Callable<T> withContextClassLoader(final Callable<T> creator) {
+        final ClassLoader callerClassLoader = Thread.currentThread().getContextClassLoader();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader cl = thread.getContextClassLoader();
+                thread.setContextClassLoader(callerClassLoader);
+                try {
+                    return creator.call();
+                } finally {
+                    thread.setContextClassLoader(cl);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the Views Service client for the instance. The client is kept for as long as the instance is in use so
+     * its keep-alive connections and TLS sessions are reused across requests.
      */
-    public ViewsService getViewService(CIMInstance instance) throws MalformedURLException, NoSuchAlgorithmException {
+    public ViewsService getViewService(final CIMInstance instance) throws MalformedURLException, GeneralSecurityException {
+        try {
+            return viewsServiceMap.get(ConnectionKey.of(instance), new Callable<ViewsService>() {
+                @Override
+                public ViewsService call() throws MalformedURLException, GeneralSecurityException {
+                    return createViewService(instance);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), MalformedURLException.class);
+            Throwables.propagateIfInstanceOf(e.getCause(), GeneralSecurityException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private ViewsService createViewService(CIMInstance instance) throws MalformedURLException, GeneralSecurityException {
         URL baseUrl = getURL(instance);
 
         ClientConfig config = new DefaultClientConfig();
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, REST_CONNECT_TIMEOUT);
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, REST_READ_TIMEOUT);
         if (instance.isUseSSL()) {
             SSLContext sslContext = SSLContext.getInstance("SSL");
-            final HTTPSProperties httpsProperties = new HTTPSProperties(HttpsURLConnection.getDefaultHostnameVerifier(), sslContext);
+            sslContext.init(null, null, null);
+            final HTTPSProperties httpsProperties = new ReusableHttpsProperties(HttpsURLConnection.getDefaultHostnameVerifier(), sslContext);
             config.getProperties().put(HTTPSProperties.PROPERTY_HTTPS_PROPERTIES, httpsProperties);
         }
-        Client restClient = Client.create();
+        Client restClient = Client.create(config);
         restClient.addFilter(new HTTPBasicAuthFilter(instance.getCoverityUser(), instance.getCoverityPassword()));
 
-        return new ViewsService(baseUrl, restClient);
+        return new ViewsService(baseUrl, restClient, REST_MAX_CONNECTIONS);
     }
 
     /**
@@ -212,6 +533,76 @@ public class WebServiceFactory {
                 cimInstance.getCoverityUser(), cimInstance.getCoverityPassword())));
     }
 
+    /**
+     * Releases the resources held by clients which are evicted from the cache. A build may still be using a client
+     * it got before the eviction: pools only release their idle clients and release the clients in use once they are
+     * returned, and shared clients, which are not returned, are released after a delay.
+     */
+    private static class ReleasingRemovalListener<V> implements RemovalListener<ConnectionKey, V> {
+        private final long releaseDelayMillis;
+
+        public ReleasingRemovalListener(long releaseDelayMillis) {
+            this.releaseDelayMillis = releaseDelayMillis;
+        }
+
+        @Override
+        public void onRemoval(RemovalNotification<ConnectionKey, V> notification) {
+            final Object value = notification.getValue();
+            if (value instanceof ServicePool) {
+                ((ServicePool<?>) value).close();
+            } else if (value instanceof Future) {
+                final Future<?> future = (Future<?>) value;
+                // clients which are still being created or failed to be created hold nothing to release
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        closeLater(future.get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        logger.fine("No web service client to release for " + notification.getKey());
+                    }
+                }
+            } else {
+                closeLater(value);
+            }
+        }
+
+        private void closeLater(final Object client) {
+            if (!(client instanceof Closeable)) {
+                return;
+            }
+            if (releaseDelayMillis <= 0) {
+                ServicePool.closeClient(client);
+                return;
+            }
+            Timer.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ServicePool.closeClient(client);
+                }
+            }, releaseDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * HTTPS properties which use the same socket factory for every connection. {@link HTTPSProperties} asks the SSL
+     * context for a new socket factory per connection, which prevents the JDK from reusing keep-alive connections.
+     */
+    private static class ReusableHttpsProperties extends HTTPSProperties {
+        private final SSLSocketFactory socketFactory;
+
+        public ReusableHttpsProperties(HostnameVerifier hostnameVerifier, SSLContext sslContext) {
+            super(hostnameVerifier, sslContext);
+            this.socketFactory = sslContext.getSocketFactory();
+        }
+
+        @Override
+        public void setConnectionProperties(HttpsURLConnection connection) {
+            if (getHostnameVerifier() != null) {
+                connection.setHostnameVerifier(getHostnameVerifier());
+            }
+            connection.setSSLSocketFactory(socketFactory);
+        }
+    }
+
     /**
      * A response from the web service URL check with the HTTP Status-Code and response message
      */
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+
+/*
+ * Loads the defects of a build a page at a time from the defects endpoint of the build action. Only the rows in and
+ * near the window are in the table, spacer rows above and below them take the height of the other rows, so the table
+ * stays small however far it is scrolled. Pages are loaded as they scroll into view and dropped when they are far from
+ * it. Sorting or filtering reloads the table from the first page.
+ */
+function CoverityDefectsTable(url, table, status, pageSize) {
+    this.url = url;
+    this.tbody = table.getElementsByTagName("tbody")[0];
+    this.status = status;
+    this.pageSize = pageSize;
+    this.sort = "cid";
+    this.order = "asc";
+    this.filter = "";
+    // measured on the first row shown, every row has one line
+    this.rowHeight = 0;
+    this.pages = {};
+    this.requests = {};
+    this.matching = -1;
+    this.total = -1;
+    this.rendered = null;
+
+    var self = this;
+    var headers = table.getElementsByTagName("th");
+    for (var i = 0; i < headers.length; i++) {
+        (function (header) {
+            header.style.cursor = "pointer";
+            header.onclick = function () {
+                var sort = header.getAttribute("data-sort");
+                self.order = self.sort === sort && self.order === "asc" ? "desc" : "asc";
+                self.sort = sort;
+                self.reload();
+            };
+        })(headers[i]);
+    }
+
+    var update = function () {
+        self.render();
+    };
+    window.addEventListener("scroll", update);
+    window.addEventListener("resize", update);
+}
+
+/*
+ * Rows kept in the table above and below the window, so short scrolls do not show empty rows
+ */
+CoverityDefectsTable.BUFFER_ROWS = 50;
+
+/*
+ * Pages kept on either side of the window once they are loaded
+ */
+CoverityDefectsTable.KEPT_PAGES = 5;
+
+CoverityDefectsTable.prototype.setFilter = function (filter) {
+    this.filter = filter;
+    this.reload();
+};
+
+CoverityDefectsTable.prototype.reload = function () {
+    for (var page in this.requests) {
+        if (this.requests.hasOwnProperty(page)) {
+            this.requests[page].abort();
+        }
+    }
+    this.requests = {};
+    this.pages = {};
+    this.matching = -1;
+    this.total = -1;
+    this.rendered = null;
+    while (this.tbody.firstChild) {
+        this.tbody.removeChild(this.tbody.firstChild);
+    }
+
+    // start again from the top of the table
+    var top = this.tbody.getBoundingClientRect().top;
+    if (top < 0) {
+        window.scrollBy(0, top);
+    }
+    this.loadPage(0);
+};
+
+CoverityDefectsTable.prototype.loadPage = function (page) {
+    if (this.requests.hasOwnProperty(page)) {
+        return;
+    }
+
+    var self = this;
+    var request = new XMLHttpRequest();
+    request.open("GET", this.url + "?start=" + (page * this.pageSize) + "&count=" + this.pageSize +
+        "&sort=" + encodeURIComponent(this.sort) + "&order=" + this.order + "&filter=" + encodeURIComponent(this.filter));
+    request.onreadystatechange = function () {
+        if (request.readyState !== 4 || self.requests[page] !== request) {
+            return;
+        }
+        delete self.requests[page];
+        if (request.status !== 200) {
+            self.status.textContent = "Unable to load defects (" + request.status + ")";
+            return;
+        }
+
+        var result = JSON.parse(request.responseText);
+        self.pages[page] = result.defects;
+        self.matching = result.matching;
+        self.total = result.total;
+        self.status.textContent = result.matching + " defects" +
+            (result.matching !== result.total ? " matching the filter (" + result.total + " in total)" : "");
+        self.rendered = null;
+        self.render();
+    };
+    this.requests[page] = request;
+    request.send();
+};
+
+/*
+ * Shows the rows in and near the window, loading the pages they are on
+ */
+CoverityDefectsTable.prototype.render = function () {
+    if (this.matching < 0) {
+        return;
+    }
+
+    // the rows start at the top of the body, below the spacer of the rows above the window
+    var rowHeight = this.rowHeight || 24;
+    var top = this.tbody.getBoundingClientRect().top;
+    var first = Math.max(0, Math.floor(-top / rowHeight) - CoverityDefectsTable.BUFFER_ROWS);
+    var last = Math.min(this.matching, Math.ceil((window.innerHeight - top) / rowHeight) + CoverityDefectsTable.BUFFER_ROWS);
+    first = Math.min(first, last);
+
+    var firstPage = Math.floor(first / this.pageSize);
+    var lastPage = Math.floor(Math.max(first, last - 1) / this.pageSize);
+    for (var page = firstPage; page <= lastPage && page * this.pageSize < this.matching; page++) {
+        if (!this.pages.hasOwnProperty(page)) {
+            this.loadPage(page);
+        }
+    }
+    for (var kept in this.pages) {
+        if (this.pages.hasOwnProperty(kept) && (kept < firstPage - CoverityDefectsTable.KEPT_PAGES ||
+                kept > lastPage + CoverityDefectsTable.KEPT_PAGES)) {
+            delete this.pages[kept];
+        }
+    }
+
+    var range = first + ":" + last;
+    if (this.rendered === range) {
+        return;
+    }
+    this.rendered = range;
+
+    var rows = document.createDocumentFragment();
+    rows.appendChild(this.createSpacer(first * rowHeight));
+    var measured = null;
+    for (var i = first; i < last; i++) {
+        var defects = this.pages[Math.floor(i / this.pageSize)];
+        var defect = defects ? defects[i % this.pageSize] : undefined;
+        var row = defect ? this.createRow(defect) : this.createPlaceholder(rowHeight);
+        if (defect && measured === null) {
+            measured = row;
+        }
+        rows.appendChild(row);
+    }
+    rows.appendChild(this.createSpacer((this.matching - last) * rowHeight));
+    while (this.tbody.firstChild) {
+        this.tbody.removeChild(this.tbody.firstChild);
+    }
+    this.tbody.appendChild(rows);
+
+    if (measured !== null && this.rowHeight === 0 && measured.offsetHeight > 0) {
+        this.rowHeight = measured.offsetHeight;
+        this.rendered = null;
+        this.render();
+    }
+};
+
+CoverityDefectsTable.prototype.createSpacer = function (height) {
+    var row = document.createElement("tr");
+    var cell = document.createElement("td");
+    cell.colSpan = 4;
+    cell.style.padding = "0";
+    cell.style.border = "0";
+    cell.style.height = height + "px";
+    row.appendChild(cell);
+    if (height <= 0) {
+        row.style.display = "none";
+    }
+    return row;
+};
+
+CoverityDefectsTable.prototype.createPlaceholder = function (height) {
+    var row = this.createSpacer(height);
+    row.className = "pane";
+    return row;
+};
+
+CoverityDefectsTable.prototype.createRow = function (defect) {
+    var row = document.createElement("tr");
+    row.className = "pane";
+
+    var cid = document.createElement("td");
+    if (defect.url) {
+        var link = document.createElement("a");
+        link.href = defect.url;
+        link.textContent = defect.cid;
+        cid.appendChild(link);
+    } else {
+        cid.textContent = defect.cid === null ? "" : defect.cid;
+    }
+    row.appendChild(cid);
+
+    var columns = [defect.checker, defect["function"], defect.file];
+    for (var i = 0; i < columns.length; i++) {
+        var cell = document.createElement("td");
+        cell.textContent = columns[i] === null || columns[i] === undefined ? "" : columns[i];
+        // rows of one line, so the position of a row follows from its index
+        cell.style.whiteSpace = "nowrap";
+        row.appendChild(cell);
+    }
+    return row;
+};
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+
+/*
+ * Draws the defect trend of a job as a stacked area chart, one area per stream or view, from the trend endpoint of
+ * the project action. Each build links to its defects page.
+ */
+function CoverityTrendChart(url, jobUrl, container) {
+    this.url = url;
+    this.jobUrl = jobUrl;
+    this.container = container;
+    this.request = null;
+}
+
+CoverityTrendChart.SVG = "http://www.w3.org/2000/svg";
+CoverityTrendChart.COLORS = ["#e06666", "#6fa8dc", "#93c47d", "#f6b26b", "#8e7cc3", "#76a5af", "#ffd966", "#c27ba0"];
+CoverityTrendChart.MARGIN = {left: 45, right: 10, top: 10, bottom: 70};
+
+CoverityTrendChart.prototype.load = function (builds) {
+    if (this.request !== null) {
+        var previous = this.request;
+        this.request = null;
+        previous.abort();
+    }
+
+    var self = this;
+    var request = new XMLHttpRequest();
+    request.open("GET", this.url + "?builds=" + encodeURIComponent(builds));
+    request.onreadystatechange = function () {
+        if (request.readyState !== 4 || self.request !== request) {
+            return;
+        }
+        self.request = null;
+        if (request.status !== 200) {
+            self.container.textContent = "Unable to load the Coverity trend (" + request.status + ")";
+            return;
+        }
+        self.render(JSON.parse(request.responseText));
+    };
+    this.request = request;
+    request.send();
+};
+
+CoverityTrendChart.prototype.render = function (trend) {
+    while (this.container.firstChild) {
+        this.container.removeChild(this.container.firstChild);
+    }
+
+    var width = this.container.clientWidth || 600;
+    var height = this.container.clientHeight || 300;
+    var margin = CoverityTrendChart.MARGIN;
+    var plotWidth = width - margin.left - margin.right;
+    var plotHeight = height - margin.top - margin.bottom - 20 * Math.ceil(trend.series.length / 2);
+    var builds = trend.builds;
+
+    var svg = this.createElement("svg", {width: width, height: height});
+    this.container.appendChild(svg);
+    if (builds.length === 0) {
+        this.appendText(svg, "No Coverity defects recorded", {x: width / 2, y: height / 2, "text-anchor": "middle"});
+        return;
+    }
+
+    // running totals of the series for each build, so each area lies on the ones before it
+    var stacks = [];
+    var max = 1;
+    for (var b = 0; b < builds.length; b++) {
+        var stack = [0];
+        for (var s = 0; s < trend.series.length; s++) {
+            stack.push(stack[s] + builds[b].counts[s]);
+        }
+        stacks.push(stack);
+        max = Math.max(max, stack[trend.series.length]);
+    }
+
+    var step = Math.max(1, Math.ceil(max / 5));
+    max = step * Math.ceil(max / step);
+    var x = function (b) {
+        return margin.left + (builds.length > 1 ? b * plotWidth / (builds.length - 1) : plotWidth / 2);
+    };
+    var y = function (value) {
+        return margin.top + plotHeight - value * plotHeight / max;
+    };
+
+    for (var tick = 0; tick <= max; tick += step) {
+        this.appendElement(svg, "line", {x1: margin.left, x2: margin.left + plotWidth, y1: y(tick), y2: y(tick), stroke: "#ddd"});
+        this.appendText(svg, tick, {x: margin.left - 5, y: y(tick) + 4, "text-anchor": "end", "font-size": 11});
+    }
+
+    for (s = 0; s < trend.series.length; s++) {
+        var points = [];
+        for (b = 0; b < builds.length; b++) {
+            points.push(x(b) + "," + y(stacks[b][s + 1]));
+        }
+        for (b = builds.length - 1; b >= 0; b--) {
+            points.push(x(b) + "," + y(stacks[b][s]));
+        }
+        this.appendElement(svg, builds.length > 1 ? "polygon" : "polyline", {
+            points: points.join(" "),
+            fill: CoverityTrendChart.COLORS[s % CoverityTrendChart.COLORS.length],
+            stroke: CoverityTrendChart.COLORS[s % CoverityTrendChart.COLORS.length],
+            "stroke-width": builds.length > 1 ? 1 : 8,
+            "fill-opacity": 0.8
+        });
+    }
+
+    // one label for at most 25 builds, and a column per build for its tooltip and link
+    var labelEvery = Math.ceil(builds.length / 25);
+    var columnWidth = builds.length > 1 ? plotWidth / (builds.length - 1) : plotWidth;
+    for (b = 0; b < builds.length; b++) {
+        if ((builds.length - 1 - b) % labelEvery === 0) {
+            this.appendText(svg, builds[b].name, {
+                x: x(b) + 4, y: margin.top + plotHeight + 5, "font-size": 11, "text-anchor": "end",
+                transform: "rotate(-90 " + (x(b) + 4) + " " + (margin.top + plotHeight + 5) + ")"
+            });
+        }
+
+        var column = this.appendElement(svg, "rect", {
+            x: Math.max(margin.left, x(b) - columnWidth / 2), y: margin.top,
+            width: Math.min(columnWidth, plotWidth), height: plotHeight, fill: "transparent", cursor: "pointer"
+        });
+        var total = stacks[b][trend.series.length];
+        var tooltip = builds[b].name + " has " + total + " total defects";
+        if (builds[b]["new"] !== undefined) {
+            tooltip += ", " + builds[b]["new"] + " new and " + builds[b].fixed + " fixed";
+        }
+        this.appendElement(column, "title", {}).textContent = tooltip;
+        this.link(column, this.jobUrl + builds[b].number + "/coverity_defects");
+    }
+
+    var legendTop = margin.top + plotHeight + margin.bottom;
+    for (s = 0; s < trend.series.length; s++) {
+        var left = margin.left + (s % 2) * plotWidth / 2;
+        var top = legendTop + 20 * Math.floor(s / 2);
+        this.appendElement(svg, "rect", {
+            x: left, y: top, width: 10, height: 10, fill: CoverityTrendChart.COLORS[s % CoverityTrendChart.COLORS.length]
+        });
+        this.appendText(svg, trend.series[s], {x: left + 15, y: top + 9, "font-size": 11});
+    }
+};
+
+CoverityTrendChart.prototype.link = function (element, href) {
+    element.onclick = function () {
+        window.location.href = href;
+    };
+};
+
+CoverityTrendChart.prototype.createElement = function (name, attributes) {
+    var element = document.createElementNS(CoverityTrendChart.SVG, name);
+    for (var attribute in attributes) {
+        if (attributes.hasOwnProperty(attribute)) {
+            element.setAttribute(attribute, attributes[attribute]);
+        }
+    }
+    return element;
+};
+
+CoverityTrendChart.prototype.appendElement = function (parent, name, attributes) {
+    var element = this.createElement(name, attributes);
+    parent.appendChild(element);
+    return element;
+};
+
+CoverityTrendChart.prototype.appendText = function (parent, text, attributes) {
+    var element = this.appendElement(parent, "text", attributes);
+    element.textContent = text;
+    return element;
+};
@@ -18,6 +18,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
@@ -33,8 +34,6 @@ import jenkins.plugins.coverity.Utils.CIMInstanceBuilder;
 import jenkins.plugins.coverity.Utils.CredentialUtil;
 import jenkins.plugins.coverity.ws.*;
 import org.apache.commons.lang.StringEscapeUtils;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -695,6 +694,34 @@ public class CIMInstanceTest {
             "[Coverity] Found 1 issues for project \"project0\" and view \"view0\"");
     }
 
+    @Test
+    public void getIssuesForView_truncatedPage_fails() throws Exception {
+        final TestableConsoleLogger testableConsoleLogger = new TestableConsoleLogger();
+        final String viewContentsApiJsonResult = "{\"viewContentsV1\": {" +
+            "    \"offset\": 0," +
+            "    \"totalRows\": 2," +
+            "    \"columns\": [" +
+            "        {" +
+            "            \"name\": \"cid\"," +
+            "            \"label\": \"CID\"" +
+            "        }" +
+            "    ]," +
+            "    \"rows\": [" +
+            "        {" +
+            "            \"cid\": 1" +
+            "        }," +
+            "        {" +
+            "            \"cid\": ";
+        TestableViewsService.setupViewContentsApi("view0", 200, viewContentsApiJsonResult);
+        CredentialUtil.setCredentialManager("user", "password");
+        CIMInstance cimInstance = new CIMInstanceBuilder().withName("instance").withHost("host").withPort(8080)
+                .withUseSSL(false).withDefaultCredentialId().build();
+
+        exception.expect(IOException.class);
+        exception.expectMessage("Unable to decode the response of GET");
+        cimInstance.getIssuesVorView("project0", "view0", testableConsoleLogger.getPrintStream());
+    }
+
     @Test
     public void getIssuesForView_handlesPagingAndLogsProgress() throws Exception {
         final TestableConsoleLogger testableConsoleLogger = new TestableConsoleLogger();
@@ -728,10 +755,7 @@ public class CIMInstanceTest {
                 int pageSize = (int)mock.getArguments()[2];
                 int offSet = (int)mock.getArguments()[3];
 
-                JSONParser parser = new JSONParser();
-                JSONObject json = (JSONObject) parser.parse(viewContentsApiJsonResultHeader.concat(constructViewContentsResult(pageSize, offSet)));
-
-                return new ViewContents((JSONObject)json.get("viewContentsV1"));
+                return ViewContentsDecoder.decode(new StringReader(viewContentsApiJsonResultHeader.concat(constructViewContentsResult(pageSize, offSet))));
             }
         };
 
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+public class CidIndexTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static CoverityBuildAction createAction(long... cids) {
+        final CoverityDefect[] defects = new CoverityDefect[cids.length];
+        for (int i = 0; i < cids.length; i++) {
+            defects[i] = new CoverityDefect(cids[i], "NULL_RETURNS", "function" + i, "file.c");
+        }
+        return new CoverityBuildAction(null, "project1", "stream1", "cim", Arrays.asList(defects));
+    }
+
+    private static Run<?, ?> createRun(Job<?, ?> job, int number, List<CoverityBuildAction> actions) {
+        final Run<?, ?> run = mock(Run.class);
+        doReturn(job).when(run).getParent();
+        when(run.getNumber()).thenReturn(number);
+        when(run.getActions(CoverityBuildAction.class)).thenReturn(actions);
+        return run;
+    }
+
+    private static void assertLifetime(CidIndex index, long cid, int firstBuild, int lastBuild, int occurrences) {
+        final CidIndex.Lifetime lifetime = index.get(cid);
+        assertEquals(cid, lifetime.getCid());
+        assertEquals(firstBuild, lifetime.getFirstBuild());
+        assertEquals(lastBuild, lifetime.getLastBuild());
+        assertEquals(occurrences, lifetime.getOccurrences());
+    }
+
+    @Test
+    public void add_mergesCidsOfBuilds() {
+        final CidIndex index = CidIndex.empty()
+            .add(1, new long[]{10001, 10003})
+            .add(2, new long[]{10002, 10003})
+            .add(4, new long[]{10003, 10004});
+
+        assertEquals(4, index.size());
+        assertEquals(4, index.getLastRecordedBuild());
+        assertLifetime(index, 10001, 1, 1, 1);
+        assertLifetime(index, 10002, 2, 2, 1);
+        assertLifetime(index, 10003, 1, 4, 3);
+        assertLifetime(index, 10004, 4, 4, 1);
+        assertNull(index.get(10005));
+    }
+
+    @Test
+    public void add_earlierBuild_isMergedByBuildNumber() {
+        CidIndex index = CidIndex.empty()
+            .add(1, new long[]{10001})
+            .add(4, new long[]{10001, 10002})
+            .add(3, new long[]{10002});
+
+        assertEquals(4, index.getLastRecordedBuild());
+        assertLifetime(index, 10001, 1, 4, 2);
+        assertLifetime(index, 10002, 3, 4, 2);
+
+        index = index.add(2, new long[]{10001});
+
+        assertLifetime(index, 10001, 1, 4, 3);
+        assertLifetime(index, 10002, 3, 4, 2);
+    }
+
+    @Test
+    public void add_recordedBuild_replacesItsCids() {
+        final CidIndex index = CidIndex.empty()
+            .add(1, new long[]{10001})
+            .add(2, new long[]{10001})
+            .add(3, new long[]{10001})
+            .add(2, new long[]{10002});
+
+        assertLifetime(index, 10001, 1, 3, 2);
+        assertLifetime(index, 10002, 2, 2, 1);
+    }
+
+    @Test
+    public void remove_prunesBuild() {
+        final CidIndex index = CidIndex.empty()
+            .add(1, new long[]{10001, 10002})
+            .add(2, new long[]{10002, 10003})
+            .add(3, new long[]{10001, 10002});
+
+        assertSame(index, index.remove(4));
+
+        final CidIndex withoutSecond = index.remove(2);
+        assertEquals(2, withoutSecond.size());
+        assertLifetime(withoutSecond, 10001, 1, 3, 2);
+        assertLifetime(withoutSecond, 10002, 1, 3, 2);
+        assertNull(withoutSecond.get(10003));
+
+        final CidIndex withoutFirst = withoutSecond.remove(1);
+        assertLifetime(withoutFirst, 10001, 3, 3, 1);
+        assertEquals(3, withoutFirst.getLastRecordedBuild());
+        assertEquals(0, withoutFirst.remove(3).getLastRecordedBuild());
+        assertEquals(0, withoutFirst.remove(3).size());
+    }
+
+    @Test
+    public void write_read_roundTrip() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), "coverity-cids.bin");
+        CidIndex.write(file, CidIndex.empty().add(1, new long[]{10001, 10003}).add(2, new long[]{10003})
+            .add(3, new long[]{10001}));
+
+        final CidIndex index = CidIndex.read(file);
+
+        assertEquals(2, index.size());
+        assertEquals(3, index.getLastRecordedBuild());
+        assertLifetime(index, 10001, 1, 3, 2);
+        assertLifetime(index, 10003, 1, 2, 2);
+    }
+
+    @Test
+    public void cidsOf_returnsDistinctCidsOfAllActions() {
+        final Job<?, ?> job = mock(Job.class);
+        final Run<?, ?> run = createRun(job, 1, Arrays.asList(createAction(10003, 10001), createAction(10002, 10003)));
+
+        assertArrayEquals(new long[]{10001, 10002, 10003}, CidIndex.cidsOf(run));
+        assertNull(CidIndex.cidsOf(createRun(job, 2, Collections.<CoverityBuildAction>emptyList())));
+    }
+
+    @Test
+    public void recordAndRemove_updateIndexCreatedFromBuilds() throws Exception {
+        final Job<?, ?> job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(temporaryFolder.getRoot());
+        final File file = new File(temporaryFolder.getRoot(), "coverity-cids.bin");
+        final Run<?, ?> run1 = createRun(job, 1, Collections.singletonList(createAction(10001, 10002)));
+        final Run<?, ?> run2 = createRun(job, 2, Collections.singletonList(createAction(10002)));
+        doReturn(run1).when(job).getLastCompletedBuild();
+
+        // without an index the build is left to the index created from the builds
+        CidIndex.record(run1);
+        assertFalse(file.exists());
+        assertLifetime(CidIndex.of(job), 10001, 1, 1, 1);
+
+        CidIndex.record(run2);
+
+        CidIndex index = CidIndex.read(file);
+        assertEquals(2, index.getLastRecordedBuild());
+        assertLifetime(index, 10001, 1, 1, 1);
+        assertLifetime(index, 10002, 1, 2, 2);
+
+        CidIndex.remove(run1);
+
+        index = CidIndex.read(file);
+        assertNull(index.get(10001));
+        assertLifetime(index, 10002, 2, 2, 1);
+        assertLifetime(CidIndex.of(job), 10002, 2, 2, 1);
+    }
+}
@@ -31,13 +31,16 @@ import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationServic
 import jenkins.plugins.coverity.ws.WebServiceFactory;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -47,6 +50,8 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
@@ -55,6 +60,9 @@ public class CoverityBuildActionTest {
     @Mock
     private Jenkins jenkins;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private CIMInstance cimInstance;
 
     @Before
@@ -96,6 +104,56 @@ public class CoverityBuildActionTest {
         assertEquals(expectedUrl, url);
     }
 
+    @Test
+    public void getUrl_resolvesProjectKeyOnce() throws IOException, CovRemoteServiceException_Exception {
+        TestConfigurationService testConfigurationService = (TestConfigurationService)WebServiceFactory.getInstance().getConfigurationService(cimInstance);
+        testConfigurationService.setupProjects("project", 3, "stream", 1);
+
+        final CoverityDefect defect = new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class");
+        CoverityBuildAction coverityBuildAction = new CoverityBuildAction(mock(AbstractBuild.class), "project2", "stream1", cimInstance.getName(), new ArrayList<CoverityDefect>());
+
+        final String url = coverityBuildAction.getURL(defect);
+        assertEquals("https://test-cim-instance:8443/sourcebrowser.htm?projectId=2&mergedDefectId=1234", url);
+
+        // the instance is not asked for the project again
+        final CIMInstance reloadedInstance = mock(CIMInstance.class);
+        when(jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(any(String.class))).thenReturn(reloadedInstance);
+        assertEquals(url, coverityBuildAction.getURL(defect));
+        verify(reloadedInstance, never()).getProjectKey(any(String.class));
+    }
+
+    @Test
+    public void getUrl_forUnknownProject_omitsLinkAndDoesNotRequestProjectAgain() throws IOException, CovRemoteServiceException_Exception {
+        TestConfigurationService testConfigurationService = (TestConfigurationService)WebServiceFactory.getInstance().getConfigurationService(cimInstance);
+        testConfigurationService.setupProjects("project", 1, "stream", 1);
+
+        final CoverityDefect defect = new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class");
+        CoverityBuildAction coverityBuildAction = new CoverityBuildAction(mock(AbstractBuild.class), "unknown-project", "stream1", cimInstance.getName(), new ArrayList<CoverityDefect>());
+
+        assertEquals(StringUtils.EMPTY, coverityBuildAction.getURL(defect));
+
+        // the failure is kept, the instance is not asked for every defect
+        final CIMInstance reloadedInstance = mock(CIMInstance.class);
+        when(jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(any(String.class))).thenReturn(reloadedInstance);
+        assertEquals(StringUtils.EMPTY, coverityBuildAction.getURL(defect));
+        verify(reloadedInstance, never()).getProjectKey(any(String.class));
+    }
+
+    @Test
+    public void getUrl_forRecordedProjectKey_doesNotRequestProject() throws IOException, CovRemoteServiceException_Exception {
+        String buildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.11.0\">\n" +
+            "      <projectId>unknown-project</projectId>\n" +
+            "      <streamId>stream1</streamId>\n" +
+            "      <cimInstance>test-cim-instance</cimInstance>\n" +
+            "      <projectKey>10005</projectKey>\n" +
+            "    </jenkins.plugins.coverity.CoverityBuildAction>";
+
+        final CoverityBuildAction coverityBuildAction = (CoverityBuildAction)new XStream2().fromXML(buildXml);
+
+        final String url = coverityBuildAction.getURL(new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class"));
+        assertEquals("https://test-cim-instance:8443/sourcebrowser.htm?projectId=10005&mergedDefectId=1234", url);
+    }
+
     @Test
     public void getDefects_forPre190Build_returnsDefectIds() {
         String oldBuildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.8.1\">\n" +
@@ -127,6 +185,84 @@ public class CoverityBuildActionTest {
         assertEquals(StringUtils.EMPTY, defects.get(1).getFilePathname());
     }
 
+    @Test
+    public void onAttached_movesDefectsToFile() throws IOException {
+        final Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(temporaryFolder.getRoot());
+        final List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c"));
+        defects.add(new CoverityDefect(null, "FORWARD_NULL", null, "file2.c"));
+
+        CoverityBuildAction coverityBuildAction = new CoverityBuildAction(null, "project0", "stream1", cimInstance.getName(), defects);
+        coverityBuildAction.onAttached(run);
+
+        final File file = new File(temporaryFolder.getRoot(), "coverity-defects.bin");
+        assertTrue(file.isFile());
+        final List<CoverityDefect> stored = DefectFile.read(file);
+        assertEquals(2, stored.size());
+        assertEquals(Long.valueOf(10001), stored.get(0).getCid());
+        assertNull(stored.get(1).getCid());
+        assertNull(stored.get(1).getFunctionDisplayName());
+        assertEquals("file2.c", stored.get(1).getFilePathname());
+
+        assertEquals(2, coverityBuildAction.getDefectCount());
+        assertEquals(2, coverityBuildAction.getDefects().size());
+    }
+
+    @Test
+    public void getDefects_readsDefectsFile() throws IOException {
+        final Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(temporaryFolder.getRoot());
+        final List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c"));
+        DefectFile.write(new File(temporaryFolder.getRoot(), "coverity-defects.bin"), defects);
+
+        String buildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.11.2\">\n" +
+            "      <projectId>project0</projectId>\n" +
+            "      <streamId>stream1</streamId>\n" +
+            "      <cimInstance>test-cim-instance</cimInstance>\n" +
+            "      <defectsFile>coverity-defects.bin</defectsFile>\n" +
+            "      <storedDefects>1</storedDefects>\n" +
+            "      <defectCount>1</defectCount>\n" +
+            "    </jenkins.plugins.coverity.CoverityBuildAction>";
+
+        final CoverityBuildAction coverityBuildAction = (CoverityBuildAction)new XStream2().fromXML(buildXml);
+        coverityBuildAction.onLoad(run);
+
+        assertEquals(1, coverityBuildAction.getDefectCount());
+        final List<CoverityDefect> result = coverityBuildAction.getDefects();
+        assertEquals(1, result.size());
+        assertEquals("NULL_RETURNS", result.get(0).getCheckerName());
+        assertFalse(coverityBuildAction.isCountOnly());
+    }
+
+    @Test
+    public void onLoad_forBuildWithDefectsInBuildXml_movesDefectsToFile() throws IOException {
+        final Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(temporaryFolder.getRoot());
+
+        String oldBuildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.11.1\">\n" +
+            "      <projectId>project0</projectId>\n" +
+            "      <streamId>stream1</streamId>\n" +
+            "      <cimInstance>test-cim-instance</cimInstance>\n" +
+            "      <defects>\n" +
+            "        <jenkins.plugins.coverity.CoverityDefect>\n" +
+            "          <cid>10001</cid>\n" +
+            "          <checkerName>NULL_RETURNS</checkerName>\n" +
+            "          <functionDisplayName>function1</functionDisplayName>\n" +
+            "          <filePathname>file1.c</filePathname>\n" +
+            "        </jenkins.plugins.coverity.CoverityDefect>\n" +
+            "      </defects>\n" +
+            "    </jenkins.plugins.coverity.CoverityBuildAction>";
+
+        final CoverityBuildAction coverityBuildAction = (CoverityBuildAction)new XStream2().fromXML(oldBuildXml);
+        coverityBuildAction.onLoad(run);
+
+        assertTrue(new File(temporaryFolder.getRoot(), "coverity-defects.bin").isFile());
+        assertEquals(1, coverityBuildAction.getDefectCount());
+        assertEquals(Long.valueOf(10001), coverityBuildAction.getDefects().get(0).getCid());
+    }
+
     @Test
     public void getProjectActions_includesCoverityProjectAction() {
         CoverityBuildAction coverityBuildAction = new CoverityBuildAction(mock(Run.class), "project0", "stream1", cimInstance.getName(), new ArrayList<CoverityDefect>());
@@ -10,9 +10,12 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +51,7 @@ import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
 import jenkins.plugins.coverity.Utils.TestableConsoleLogger;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory;
 import jenkins.plugins.coverity.ws.TestableViewsService;
 import jenkins.plugins.coverity.ws.WebServiceFactory;
 
@@ -79,6 +83,10 @@ public class CoverityViewResultsPublisherTest {
         when(globalDescriptor.getInstances()).thenReturn(cimInstances);
         when(jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class)).thenReturn(globalDescriptor);
 
+        // views service clients are kept by the factory, so each test needs its own factory
+        PowerMockito.mockStatic(WebServiceFactory.class);
+        when(WebServiceFactory.getInstance()).thenReturn(new TestWebServiceFactory());
+
         final CoverityViewResultsDescriptor stepDescriptor = new CoverityViewResultsDescriptor();
         when(jenkins.getDescriptorOrDie(CoverityViewResultsPublisher.class)).thenReturn(stepDescriptor);
 
@@ -282,6 +290,57 @@ public class CoverityViewResultsPublisherTest {
                 "[Coverity] Coverity issues were found and abortPipeline was set to true, throwing abort exception");
     }
 
+    @Test
+    public void perform_gateOnly_keepsSampleAndIssueCount() throws IOException, InterruptedException {
+        final String instance = cimInstance.getName();
+        final String projectId = "projectId";
+        final String view = "view";
+
+        setupRunToHandleBuildAction();
+        setupIssues(view, 20);
+        final CoverityViewResultsPublisher publisher = new CoverityViewResultsPublisher(instance, view, projectId);
+        publisher.setFailPipeline(true);
+        publisher.setGateOnly(true);
+        publisher.setSampleSize(5);
+
+        publisher.perform(run, workspace, launcher, listener);
+
+        final CoverityBuildAction buildAction = (CoverityBuildAction)lastBuildAction;
+        assertEquals(20, buildAction.getDefectCount());
+        assertEquals(5, buildAction.getDefects().size());
+        assertTrue(buildAction.isSampled());
+
+        consoleLogger.verifyMessages(getInformationMessage(instance, projectId, view),
+            "[Coverity] Retrieving issue count for project \"" + projectId + "\" and view \"" + view + "\"",
+            getIssueCountMessage(20, projectId, view) + ", keeping 5 of them",
+            expectedUrlMessage,
+            "[Coverity] Coverity issues were found and failPipeline was set to true, the pipeline result will be marked as FAILURE.",
+            expectedFinishedMessage);
+        verify(run).setResult(Result.FAILURE);
+    }
+
+    @Test
+    public void perform_failPipeline_withIssuesWithinThreshold() throws IOException, InterruptedException {
+        final String instance = cimInstance.getName();
+        final String projectId = "projectId";
+        final String view = "view";
+
+        setupRunToHandleBuildAction();
+        setupIssues(view, 10);
+        final CoverityViewResultsPublisher publisher = new CoverityViewResultsPublisher(instance, view, projectId);
+        publisher.setFailPipeline(true);
+        publisher.setIssueThreshold(10);
+
+        publisher.perform(run, workspace, launcher, listener);
+
+        consoleLogger.verifyMessages(getInformationMessage(instance, projectId, view),
+            getRetrievingMessage(projectId, view),
+            getIssueCountMessage(10, projectId, view),
+            expectedUrlMessage,
+            expectedFinishedMessage);
+        verify(run, never()).setResult(any(Result.class));
+    }
+
     public void setupIssues(String view, int count) {
         final StringBuilder viewContentsApiJsonResult = new StringBuilder("{\"viewContentsV1\": {" +
             "    \"offset\": 0," +
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.sun.jersey.api.client.Client;
+
+import hudson.AbortException;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
+import jenkins.plugins.coverity.Utils.CIMInstanceBuilder;
+import jenkins.plugins.coverity.Utils.CredentialUtil;
+import jenkins.plugins.coverity.Utils.TestableConsoleLogger;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory;
+import jenkins.plugins.coverity.ws.TestableViewsService;
+import jenkins.plugins.coverity.ws.WebServiceFactory;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Jenkins.class, WebServiceFactory.class, Client.class, Secret.class, CredentialsMatchers.class, CredentialsProvider.class})
+public class CoverityViewResultsStepTest {
+    private CIMInstance cimInstance;
+    private TestableConsoleLogger consoleLogger;
+    private StepContext context;
+    private Run run;
+    private volatile CoverityBuildAction lastBuildAction;
+
+    @Before
+    public void setup() throws Exception {
+        // setup jenkins
+        final Jenkins jenkins = mock(Jenkins.class);
+        when(jenkins.getRootUrl()).thenReturn("/jenkins/");
+        PowerMockito.mockStatic(Jenkins.class);
+        when(Jenkins.getInstance()).thenReturn(jenkins);
+        final DescriptorImpl globalDescriptor = mock(CoverityPublisher.DescriptorImpl.class);
+        CredentialUtil.setCredentialManager("admin", "password");
+        cimInstance = new CIMInstanceBuilder().withName("pipeline-instance").withHost("test-cim-instance").withPort(8080)
+                        .withUseSSL(false).withDefaultCredentialId().build();
+        final List<CIMInstance> cimInstances = Arrays.asList(cimInstance);
+        when(globalDescriptor.getInstances()).thenReturn(cimInstances);
+        when(jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class)).thenReturn(globalDescriptor);
+
+        PowerMockito.mockStatic(WebServiceFactory.class);
+        when(WebServiceFactory.getInstance()).thenReturn(new TestWebServiceFactory());
+
+        when(jenkins.getDescriptorOrDie(CoverityViewResultsPublisher.class)).thenReturn(new CoverityViewResultsDescriptor());
+
+        consoleLogger = new TestableConsoleLogger();
+        final TaskListener listener = mock(TaskListener.class);
+        when(listener.getLogger()).thenReturn(consoleLogger.getPrintStream());
+        run = mock(Run.class);
+        when(run.getUrl()).thenReturn("pipeline_run/");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                lastBuildAction = (CoverityBuildAction)invocation.getArguments()[0];
+                return null;
+            }
+        }).when(run).addAction(any(CoverityBuildAction.class));
+        when(run.getAction(CoverityBuildAction.class)).thenAnswer(new Answer<CoverityBuildAction>() {
+            @Override
+            public CoverityBuildAction answer(InvocationOnMock invocation) throws Throwable {
+                return lastBuildAction;
+            }
+        });
+
+        context = mock(StepContext.class);
+        when(context.get(Run.class)).thenReturn(run);
+        when(context.get(TaskListener.class)).thenReturn(listener);
+    }
+
+    @Test
+    public void start_readsViewAsynchronously() throws Exception {
+        TestableViewsService.setupViewContentsApi("view", 200, "{\"viewContentsV1\": {\"offset\": 0, \"totalRows\": 1, " +
+            "\"columns\": [{\"name\": \"cid\"}, {\"name\": \"checker\"}, {\"name\": \"displayFile\"}, {\"name\": \"displayFunction\"}], " +
+            "\"rows\": [{\"cid\": 1, \"checker\": \"FORWARD_NULL\", \"displayFile\": \"source.cpp\", \"displayFunction\": \"test\"}]}}");
+        final CoverityViewResultsStep step = new CoverityViewResultsStep(cimInstance.getName(), "view", "projectId");
+        step.setUnstable(true);
+
+        final StepExecution execution = step.start(context);
+
+        assertFalse(execution.start());
+        verify(context, timeout(10000)).onSuccess(isNull());
+        assertEquals(1, lastBuildAction.getDefectCount());
+        verify(run).setResult(Result.UNSTABLE);
+        consoleLogger.verifyLastMessage("[Coverity] Finished reading Coverity view 'view'");
+    }
+
+    @Test
+    public void start_unknownInstance_failsStep() throws Exception {
+        final CoverityViewResultsStep step = new CoverityViewResultsStep("unknown-instance", "view", "projectId");
+
+        step.start(context).start();
+
+        verify(context, timeout(10000)).onFailure(any(AbortException.class));
+    }
+
+    @Test
+    public void stop_failsStep() throws Exception {
+        final CoverityViewResultsStep step = new CoverityViewResultsStep(cimInstance.getName(), "view", "projectId");
+        final AbortException cause = new AbortException("Aborted by user");
+
+        step.start(context).stop(cause);
+
+        verify(context).onFailure(cause);
+        consoleLogger.verifyLastMessage("[Coverity] Stopped reading Coverity view 'view': " + cause);
+    }
+
+    @Test
+    public void stop_afterStepFailed_doesNotCompleteStepAgain() throws Exception {
+        final CoverityViewResultsStep step = new CoverityViewResultsStep("unknown-instance", "view", "projectId");
+        final StepExecution execution = step.start(context);
+        final AbortException cause = new AbortException("Aborted by user");
+
+        execution.start();
+        verify(context, timeout(10000)).onFailure(any(AbortException.class));
+        execution.stop(cause);
+
+        verify(context, times(1)).onFailure(any(Throwable.class));
+        verify(context, never()).onFailure(cause);
+    }
+}
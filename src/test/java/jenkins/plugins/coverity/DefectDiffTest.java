@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DefectDiffTest {
+    @Test
+    public void compute_findsNewAndFixedCids() {
+        final DefectDiff diff = DefectDiff.compute(new long[] {1, 3, 5, 7}, new long[] {2, 3, 7, 8, 9});
+
+        assertArrayEquals(new long[] {2, 8, 9}, diff.getNewCids());
+        assertArrayEquals(new long[] {1, 5}, diff.getFixedCids());
+        assertEquals(2, diff.getUnchangedCount());
+    }
+
+    @Test
+    public void compute_withoutPreviousCids_allCidsAreNew() {
+        final DefectDiff diff = DefectDiff.compute(new long[0], new long[] {4, 6});
+
+        assertArrayEquals(new long[] {4, 6}, diff.getNewCids());
+        assertArrayEquals(new long[0], diff.getFixedCids());
+        assertEquals(0, diff.getUnchangedCount());
+    }
+
+    @Test
+    public void getSortedCids_sortsAndRemovesDuplicateCids() {
+        final DefectTable table = DefectTable.of(Arrays.asList(
+            new CoverityDefect(30L, "A", "f", "a.c"),
+            new CoverityDefect(10L, "A", "g", "a.c"),
+            new CoverityDefect(null, "B", "h", "b.c"),
+            new CoverityDefect(30L, "A", "i", "c.c")));
+
+        assertArrayEquals(new long[] {10, 30}, table.getSortedCids());
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.json.JSONObject;
+
+public class DefectExportTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static List<CoverityDefect> createDefects() {
+        return Arrays.asList(
+            new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c", "Default.Other"),
+            new CoverityDefect(10002L, "FORWARD_NULL", "operator,()", "file \"2\".c", "Default.Other"),
+            new CoverityDefect(10003L, "NULL_RETURNS", "function3", "file3.c", "Library"));
+    }
+
+    private static String export(DefectExport export, List<CoverityDefect> defects, String urlPrefix) throws Exception {
+        final StringWriter out = new StringWriter();
+        export.write(defects, urlPrefix, out);
+        return out.toString();
+    }
+
+    @Test
+    public void write_ndjson_writesOneObjectPerLine() throws Exception {
+        final String ndjson = export(new DefectExport(DefectExport.Format.NDJSON, null, null), createDefects(),
+            "https://host:8443/sourcebrowser.htm?projectId=1&mergedDefectId=");
+
+        final String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        final JSONObject first = JSONObject.fromObject(lines[0]);
+        assertEquals(10001L, first.getLong("cid"));
+        assertEquals("NULL_RETURNS", first.getString("checker"));
+        assertEquals("function1", first.getString("function"));
+        assertEquals("file1.c", first.getString("file"));
+        assertEquals("Default.Other", first.getString("component"));
+        assertEquals("https://host:8443/sourcebrowser.htm?projectId=1&mergedDefectId=10001", first.getString("url"));
+    }
+
+    @Test
+    public void write_csv_quotesValues() throws Exception {
+        final String csv = export(new DefectExport(DefectExport.Format.CSV, null, null), createDefects(), null);
+
+        assertEquals("cid,checker,function,file,component,url\r\n" +
+            "10001,NULL_RETURNS,function1,file1.c,Default.Other,\r\n" +
+            "10002,FORWARD_NULL,\"operator,()\",\"file \"\"2\"\".c\",Default.Other,\r\n" +
+            "10003,NULL_RETURNS,function3,file3.c,Library,\r\n", csv);
+    }
+
+    @Test
+    public void write_filtersCheckersAndComponents() throws Exception {
+        final DefectExport export = new DefectExport(DefectExport.Format.CSV, new String[]{"NULL_RETURNS"}, new String[]{"Library"});
+
+        final String expected = "cid,checker,function,file,component,url\r\n10003,NULL_RETURNS,function3,file3.c,Library,\r\n";
+        assertEquals(expected, export(export, createDefects(), null));
+        assertEquals(expected, export(export, DefectTable.of(createDefects()), null));
+    }
+
+    @Test
+    public void write_rowsOfDefectFile_filtersCheckersAndComponents() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), "coverity-defects.bin");
+        DefectFile.write(file, createDefects());
+        final DefectExport export = new DefectExport(DefectExport.Format.CSV, new String[]{"NULL_RETURNS"}, null);
+
+        final StringWriter out = new StringWriter();
+        try (DefectTable.Rows rows = DefectFile.readRows(file)) {
+            export.write(rows, null, out);
+        }
+
+        assertEquals("cid,checker,function,file,component,url\r\n" +
+            "10001,NULL_RETURNS,function1,file1.c,Default.Other,\r\n" +
+            "10003,NULL_RETURNS,function3,file3.c,Library,\r\n", out.toString());
+    }
+
+    @Test
+    public void parse_format() {
+        assertEquals(DefectExport.Format.NDJSON, DefectExport.Format.parse(null));
+        assertEquals(DefectExport.Format.CSV, DefectExport.Format.parse("csv"));
+        assertNull(DefectExport.Format.parse("xml"));
+    }
+}
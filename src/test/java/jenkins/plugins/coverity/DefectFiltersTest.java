@@ -196,4 +196,22 @@ public class DefectFiltersTest {
         DefectFilters filters = new DefectFilters();
         assertTrue(filters.isCheckerSelected("CHECKER"));
     }
+
+    @Test
+    public void getDigest_changesOnlyWithFilterValues() throws FormException {
+        DefectFilters filters = new DefectFilters();
+        filters.setActions(Arrays.asList("Undecided", "Fix Required"));
+        filters.setCutOffDate("2018-01-01");
+
+        DefectFilters reordered = new DefectFilters();
+        reordered.setActions(Arrays.asList("Fix Required", "Undecided"));
+        reordered.setCutOffDate("2018-01-01");
+
+        DefectFilters changed = new DefectFilters();
+        changed.setActions(Arrays.asList("Fix Required", "Undecided"));
+        changed.setCutOffDate("2018-02-01");
+
+        assertEquals(filters.getDigest(), reordered.getDigest());
+        assertFalse(filters.getDigest().equals(changed.getDigest()));
+    }
 }
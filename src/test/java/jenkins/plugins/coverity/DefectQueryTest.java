@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class DefectQueryTest {
+    private static final List<CoverityDefect> defects = Arrays.asList(
+        new CoverityDefect(10003L, "RESOURCE_LEAK", "open()", "src/io.c"),
+        new CoverityDefect(10001L, "NULL_RETURNS", "parse()", "src/parser.c"),
+        new CoverityDefect(10002L, "FORWARD_NULL", "parseAll()", "src/parser.c"),
+        new CoverityDefect(10004L, "NULL_RETURNS", "close()", "src/io.c"));
+
+    @Test
+    public void select_sortsByCidByDefault() {
+        final List<CoverityDefect> selected = new DefectQuery(0, 10, null, null, null).select(defects);
+
+        assertEquals(Long.valueOf(10001), selected.get(0).getCid());
+        assertEquals(Long.valueOf(10004), selected.get(3).getCid());
+    }
+
+    @Test
+    public void select_sortsByColumnThenCid() {
+        final List<CoverityDefect> selected = new DefectQuery(0, 10, "checker", "desc", null).select(defects);
+
+        assertEquals("RESOURCE_LEAK", selected.get(0).getCheckerName());
+        assertEquals(Long.valueOf(10004), selected.get(1).getCid());
+        assertEquals(Long.valueOf(10001), selected.get(2).getCid());
+        assertEquals("FORWARD_NULL", selected.get(3).getCheckerName());
+    }
+
+    @Test
+    public void select_filtersOnAnyColumn() {
+        assertEquals(2, new DefectQuery(0, 10, null, null, "PARSER").select(defects).size());
+        assertEquals(1, new DefectQuery(0, 10, null, null, "10003").select(defects).size());
+        assertEquals(0, new DefectQuery(0, 10, null, null, "missing").select(defects).size());
+    }
+
+    @Test
+    public void toJSON_returnsRequestedSlice() {
+        final JSONObject result = new DefectQuery(1, 2, "file", "asc", null).toJSON(defects, "http://cim:8080/sourcebrowser.htm?projectId=1&mergedDefectId=");
+
+        assertEquals(4, result.getInt("total"));
+        assertEquals(4, result.getInt("matching"));
+        assertEquals(1, result.getInt("start"));
+        final JSONArray rows = result.getJSONArray("defects");
+        assertEquals(2, rows.size());
+        assertEquals(10004L, rows.getJSONObject(0).getLong("cid"));
+        assertEquals("close()", rows.getJSONObject(0).getString("function"));
+        assertEquals("http://cim:8080/sourcebrowser.htm?projectId=1&mergedDefectId=10004", rows.getJSONObject(0).getString("url"));
+        assertEquals(10001L, rows.getJSONObject(1).getLong("cid"));
+    }
+
+    @Test
+    public void toJSON_withoutUrlPrefix_omitsUrl() {
+        final JSONObject result = new DefectQuery(0, 1, null, null, null).toJSON(defects, null);
+
+        assertFalse(result.getJSONArray("defects").getJSONObject(0).has("url"));
+    }
+
+    @Test
+    public void select_withoutCid_sortsFirst() {
+        final List<CoverityDefect> selected = new DefectQuery(0, 10, null, null, null).select(Arrays.asList(
+            new CoverityDefect(10001L, "NULL_RETURNS", "parse()", "src/parser.c"),
+            new CoverityDefect(null, "FORWARD_NULL", null, "src/io.c")));
+
+        assertEquals("FORWARD_NULL", selected.get(0).getCheckerName());
+        assertEquals(Long.valueOf(10001), selected.get(1).getCid());
+    }
+
+    @Test
+    public void isSelectedBy_matchesSameDefectsSortAndFilter() {
+        final DefectQuery.Selection selection = new DefectQuery(0, 10, "file", "desc", "Parser").select(defects);
+
+        assertTrue(new DefectQuery(100, 10, "file", "desc", "parser").isSelectedBy(selection, defects));
+        assertFalse(new DefectQuery(0, 10, "file", "asc", "parser").isSelectedBy(selection, defects));
+        assertFalse(new DefectQuery(0, 10, "checker", "desc", "parser").isSelectedBy(selection, defects));
+        assertFalse(new DefectQuery(0, 10, "file", "desc", null).isSelectedBy(selection, defects));
+        assertFalse(new DefectQuery(0, 10, "file", "desc", "parser").isSelectedBy(selection, Arrays.asList(defects.get(0))));
+    }
+
+    @Test
+    public void toJSON_fromSelection_returnsRequestedSlice() {
+        final DefectQuery.Selection selection = new DefectQuery(0, 2, "function", "asc", null).select(defects);
+
+        final JSONObject result = new DefectQuery(2, 2, "function", "asc", null).toJSON(selection, null);
+
+        assertEquals(4, result.getInt("total"));
+        assertEquals(2, result.getInt("start"));
+        final JSONArray rows = result.getJSONArray("defects");
+        assertEquals(2, rows.size());
+        assertEquals("parse()", rows.getJSONObject(0).getString("function"));
+        assertEquals("parseAll()", rows.getJSONObject(1).getString("function"));
+    }
+}
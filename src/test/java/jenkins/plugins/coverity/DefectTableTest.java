@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DefectTableTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static List<CoverityDefect> createDefects() {
+        return Arrays.asList(
+            new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c"),
+            new CoverityDefect(10002L, "NULL_RETURNS", "function2", "file1.c"),
+            new CoverityDefect(null, "FORWARD_NULL", null, "file2.c"));
+    }
+
+    private static void assertDefects(List<CoverityDefect> defects) {
+        assertEquals(3, defects.size());
+        assertEquals(Long.valueOf(10001), defects.get(0).getCid());
+        assertEquals("NULL_RETURNS", defects.get(0).getCheckerName());
+        assertEquals("function1", defects.get(0).getFunctionDisplayName());
+        assertEquals("file1.c", defects.get(0).getFilePathname());
+        assertEquals("function2", defects.get(1).getFunctionDisplayName());
+        assertNull(defects.get(2).getCid());
+        assertEquals("FORWARD_NULL", defects.get(2).getCheckerName());
+        assertNull(defects.get(2).getFunctionDisplayName());
+        assertEquals("file2.c", defects.get(2).getFilePathname());
+    }
+
+    @Test
+    public void of_keepsDistinctStringsOnce() {
+        final DefectTable table = DefectTable.of(createDefects());
+
+        assertDefects(table);
+        assertEquals(6, table.getDictionarySize());
+        assertSame(table, DefectTable.of(table));
+    }
+
+    @Test
+    public void of_sharesStringsBetweenTables() {
+        final DefectTable first = DefectTable.of(createDefects());
+        final DefectTable second = DefectTable.of(Arrays.asList(
+            new CoverityDefect(10003L, new String("NULL_RETURNS"), "function3", new String("file1.c"))));
+
+        assertSame(first.get(0).getCheckerName(), second.get(0).getCheckerName());
+        assertSame(first.get(0).getFilePathname(), second.get(0).getFilePathname());
+    }
+
+    @Test
+    public void writeTo_readFrom_roundTrip() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            DefectTable.of(createDefects()).writeTo(out);
+        }
+
+        final DefectTable table = DefectTable.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertDefects(table);
+    }
+
+    @Test
+    public void defectFile_roundTrip() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), "coverity-defects.bin");
+
+        DefectFile.write(file, createDefects());
+
+        assertDefects(DefectFile.read(file));
+    }
+
+    @Test
+    public void defectFile_longStrings_roundTrip() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), "coverity-defects.bin");
+        final char[] chars = new char[70000];
+        Arrays.fill(chars, '\u00e9');
+        final String functionDisplayName = new String(chars);
+
+        DefectFile.write(file, Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", functionDisplayName, "file1.c")));
+
+        assertEquals(functionDisplayName, DefectFile.read(file).get(0).getFunctionDisplayName());
+    }
+
+    @Test
+    public void writeTo_readFrom_keepsComponentNames() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            DefectTable.of(Arrays.asList(
+                new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c", "Default.Other"),
+                new CoverityDefect(10002L, "NULL_RETURNS", "function2", "file2.c"))).writeTo(out);
+        }
+
+        final DefectTable table = DefectTable.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("Default.Other", table.get(0).getComponentName());
+        assertEquals("Default.Other", table.getComponentName(0));
+        assertNull(table.get(1).getComponentName());
+        assertEquals("NULL_RETURNS", table.getCheckerName(1));
+    }
+
+    private static DataInputStream corrupt(int dictionarySize, int count) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(dictionarySize);
+            for (int i = 0; i < Math.min(dictionarySize, 1); i++) {
+                DefectTable.writeString(out, "NULL_RETURNS");
+            }
+            out.writeInt(count);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_negativeDefectCount_throwsIOException() throws Exception {
+        DefectTable.readFrom(corrupt(1, -1));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_implausibleDefectCount_throwsIOException() throws Exception {
+        DefectTable.readFrom(corrupt(1, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_negativeStringCount_throwsIOException() throws Exception {
+        DefectTable.readFrom(corrupt(-1, 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_implausibleStringCount_throwsIOException() throws Exception {
+        DefectTable.readFrom(corrupt(Integer.MAX_VALUE, 1));
+    }
+}
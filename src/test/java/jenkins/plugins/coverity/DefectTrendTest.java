@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class DefectTrendTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Job<?, ?> createJob() {
+        final Job<?, ?> job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(temporaryFolder.getRoot());
+        return job;
+    }
+
+    private static Run<?, ?> createRun(Job<?, ?> job, int number, List<CoverityBuildAction> actions) {
+        final Run<?, ?> run = mock(Run.class);
+        doReturn(job).when(run).getParent();
+        when(run.getNumber()).thenReturn(number);
+        when(run.getDisplayName()).thenReturn("#" + number);
+        when(run.getActions(CoverityBuildAction.class)).thenReturn(actions);
+        return run;
+    }
+
+    @Test
+    public void write_thenAppend_readsAllEntries() throws Exception {
+        final File file = temporaryFolder.newFile();
+        DefectTrend.write(file, Collections.singletonList(new DefectTrend.Entry(1, "#1", "master", "Coverity Defects (stream1)", 10, -1, -1)));
+        DefectTrend.append(file, Arrays.asList(
+            new DefectTrend.Entry(2, "#2", null, "Coverity Defects (stream1)", 12, 3, 1),
+            new DefectTrend.Entry(2, "#2", null, "Coverity Defects (stream2)", 4, 0, 0)));
+
+        final List<DefectTrend.Entry> entries = DefectTrend.read(file);
+
+        assertEquals(3, entries.size());
+        assertEquals(1, entries.get(0).getBuildNumber());
+        assertEquals("master", entries.get(0).getBuiltOn());
+        assertFalse(entries.get(0).isCompared());
+        assertEquals(2, entries.get(1).getBuildNumber());
+        assertEquals("#2", entries.get(1).getDisplayName());
+        assertNull(entries.get(1).getBuiltOn());
+        assertEquals("Coverity Defects (stream1)", entries.get(1).getSeries());
+        assertEquals(12, entries.get(1).getDefectCount());
+        assertTrue(entries.get(1).isCompared());
+        assertEquals(3, entries.get(1).getNewDefectCount());
+        assertEquals(1, entries.get(1).getFixedDefectCount());
+        assertEquals("Coverity Defects (stream2)", entries.get(2).getSeries());
+    }
+
+    @Test
+    public void read_partiallyWrittenEntry_isIgnored() throws Exception {
+        final File file = temporaryFolder.newFile();
+        DefectTrend.write(file, Arrays.asList(
+            new DefectTrend.Entry(1, "#1", null, "Coverity Defects (stream1)", 10, -1, -1),
+            new DefectTrend.Entry(2, "#2", null, "Coverity Defects (stream1)", 12, 3, 1)));
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 2);
+        }
+
+        final List<DefectTrend.Entry> entries = DefectTrend.read(file);
+
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).getBuildNumber());
+    }
+
+    @Test
+    public void insert_afterPartiallyWrittenEntry_keepsEntry() throws Exception {
+        final File file = temporaryFolder.newFile();
+        DefectTrend.write(file, Arrays.asList(
+            new DefectTrend.Entry(1, "#1", null, "Coverity Defects (stream1)", 10, -1, -1),
+            new DefectTrend.Entry(2, "#2", null, "Coverity Defects (stream1)", 12, 3, 1)));
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 2);
+        }
+
+        DefectTrend.insert(file, 3, Collections.singletonList(
+            new DefectTrend.Entry(3, "#3", null, "Coverity Defects (stream1)", 11, 0, 1)));
+
+        final List<DefectTrend.Entry> entries = DefectTrend.read(file);
+        assertEquals(2, entries.size());
+        assertEquals(1, entries.get(0).getBuildNumber());
+        assertEquals(3, entries.get(1).getBuildNumber());
+        assertEquals(11, entries.get(1).getDefectCount());
+    }
+
+    @Test
+    public void recordAndRemove_updateTrendOfJob() throws Exception {
+        final Job<?, ?> job = createJob();
+        DefectTrend.write(new File(temporaryFolder.getRoot(), "coverity-trend.bin"),
+            Collections.singletonList(new DefectTrend.Entry(1, "#1", null, "Coverity Defects (stream1)", 10, -1, -1)));
+
+        final CoverityBuildAction action = new CoverityBuildAction(null, "project1", "stream1", "cim",
+            Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c")));
+        DefectTrend.record(createRun(job, 2, Collections.singletonList(action)));
+        DefectTrend.record(createRun(job, 3, Collections.<CoverityBuildAction>emptyList()));
+
+        List<DefectTrend.Entry> entries = DefectTrend.read(job);
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(1).getBuildNumber());
+        assertEquals("Coverity Defects (stream1)", entries.get(1).getSeries());
+        assertEquals(1, entries.get(1).getDefectCount());
+
+        DefectTrend.remove(createRun(job, 1, Collections.<CoverityBuildAction>emptyList()));
+
+        entries = DefectTrend.read(job);
+        assertEquals(1, entries.size());
+        assertEquals(2, entries.get(0).getBuildNumber());
+    }
+
+    @Test
+    public void record_buildCompletedAfterLaterBuild_isInsertedInOrder() throws Exception {
+        final Job<?, ?> job = createJob();
+        DefectTrend.write(new File(temporaryFolder.getRoot(), "coverity-trend.bin"), Arrays.asList(
+            new DefectTrend.Entry(1, "#1", null, "Coverity Defects (stream1)", 10, -1, -1),
+            new DefectTrend.Entry(3, "#3", null, "Coverity Defects (stream1)", 12, -1, -1)));
+
+        final CoverityBuildAction action = new CoverityBuildAction(null, "project1", "stream1", "cim",
+            Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c")));
+        DefectTrend.record(createRun(job, 2, Collections.singletonList(action)));
+        DefectTrend.record(createRun(job, 2, Collections.singletonList(action)));
+
+        final List<DefectTrend.Entry> entries = DefectTrend.read(job);
+        assertEquals(3, entries.size());
+        assertEquals(1, entries.get(0).getBuildNumber());
+        assertEquals(2, entries.get(1).getBuildNumber());
+        assertEquals(1, entries.get(1).getDefectCount());
+        assertEquals(3, entries.get(2).getBuildNumber());
+    }
+
+    @Test
+    public void record_withoutTrendFile_leavesItToBeCreatedWhenRead() throws Exception {
+        final Job<?, ?> job = createJob();
+        final CoverityBuildAction action = new CoverityBuildAction(null, "project1", "stream1", "cim",
+            Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c")));
+
+        DefectTrend.record(createRun(job, 1, Collections.singletonList(action)));
+
+        assertFalse(new File(temporaryFolder.getRoot(), "coverity-trend.bin").exists());
+    }
+
+    @Test
+    public void read_withoutTrendFile_createsItFromBuilds() throws Exception {
+        final Job<?, ?> job = createJob();
+        final CoverityBuildAction action1 = new CoverityBuildAction(null, "project1", "stream1", "cim",
+            Collections.<CoverityDefect>emptyList());
+        final CoverityBuildAction action2 = new CoverityBuildAction(null, "project1", "stream1", "cim",
+            Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c")));
+        final Run<?, ?> run1 = createRun(job, 1, Collections.singletonList(action1));
+        final Run<?, ?> run2 = createRun(job, 2, Collections.singletonList(action2));
+        doReturn(run1).when(run2).getPreviousBuild();
+        doReturn(run2).when(job).getLastCompletedBuild();
+
+        final List<DefectTrend.Entry> entries = DefectTrend.read(job);
+
+        assertEquals(2, entries.size());
+        assertEquals(1, entries.get(0).getBuildNumber());
+        assertEquals(0, entries.get(0).getDefectCount());
+        assertEquals(2, entries.get(1).getBuildNumber());
+        assertEquals(1, entries.get(1).getDefectCount());
+        assertTrue(new File(temporaryFolder.getRoot(), "coverity-trend.bin").isFile());
+    }
+
+    @Test
+    public void toJSON_returnsCountsOfLastBuilds() {
+        final List<DefectTrend.Entry> entries = Arrays.asList(
+            new DefectTrend.Entry(1, "#1", null, "Coverity Defects (stream1)", 10, -1, -1),
+            new DefectTrend.Entry(2, "#2", null, "Coverity Defects (stream1)", 12, 3, 1),
+            new DefectTrend.Entry(3, "#3", "agent1", "Coverity Defects (stream2)", 4, -1, -1),
+            new DefectTrend.Entry(3, "#3", "agent1", "Coverity Defects (stream1)", 11, 0, 1));
+
+        final JSONObject trend = DefectTrend.toJSON(entries, 2);
+
+        assertEquals(JSONArray.fromObject(Arrays.asList("Coverity Defects (stream1)", "Coverity Defects (stream2)")), trend.getJSONArray("series"));
+        final JSONArray builds = trend.getJSONArray("builds");
+        assertEquals(2, builds.size());
+        assertEquals(2, builds.getJSONObject(0).getInt("number"));
+        assertEquals("#2", builds.getJSONObject(0).getString("name"));
+        assertEquals(JSONArray.fromObject(new int[]{12, 0}), builds.getJSONObject(0).getJSONArray("counts"));
+        assertEquals(3, builds.getJSONObject(0).getInt("new"));
+        assertEquals(1, builds.getJSONObject(0).getInt("fixed"));
+        assertEquals("#3 agent1", builds.getJSONObject(1).getString("name"));
+        assertEquals(JSONArray.fromObject(new int[]{11, 4}), builds.getJSONObject(1).getJSONArray("counts"));
+        assertEquals(0, builds.getJSONObject(1).getInt("new"));
+
+        assertEquals(3, DefectTrend.toJSON(entries, Integer.MAX_VALUE).getJSONArray("builds").size());
+    }
+}
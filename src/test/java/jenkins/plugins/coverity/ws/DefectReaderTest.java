@@ -10,9 +10,13 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,6 +24,7 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 
@@ -32,7 +37,10 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.SnapshotIdDataObj;
 
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
@@ -42,11 +50,13 @@ import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
+import jenkins.plugins.coverity.CoverityDefect;
 import jenkins.plugins.coverity.CoverityPublisher;
 import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
 import jenkins.plugins.coverity.DefectFilters;
 import jenkins.plugins.coverity.Utils.CoverityPublisherBuilder;
 import jenkins.plugins.coverity.Utils.TestableConsoleLogger;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
 import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
 
 @RunWith(PowerMockRunner.class)
@@ -66,6 +76,7 @@ public class DefectReaderTest {
 
     private TestableConsoleLogger consoleLogger;
     private TestDefectService defectService;
+    private TestConfigurationService configurationService;
     private static final String cimInstanceName = "cim-instance";
 
     @Before
@@ -82,6 +93,19 @@ public class DefectReaderTest {
         CIMInstance cimInstance = mock(CIMInstance.class);
         defectService = (TestDefectService)new TestWebServiceFactory().getDefectService(cimInstance);
         when(cimInstance.getDefectService()).thenReturn(defectService);
+        when(cimInstance.getDefectServicePool()).thenReturn(new ServicePool<>(new ServicePool.Factory<DefectService>() {
+            @Override
+            public DefectService create() {
+                return defectService;
+            }
+        }, 1, 60000, 60000));
+        configurationService = (TestConfigurationService)new TestWebServiceFactory().getConfigurationService(cimInstance);
+        when(cimInstance.getConfigurationServicePool()).thenReturn(new ServicePool<>(new ServicePool.Factory<ConfigurationService>() {
+            @Override
+            public ConfigurationService create() {
+                return configurationService;
+            }
+        }, 1, 60000, 60000));
         when(descriptor.getInstance(any(CoverityPublisher.class))).thenReturn(cimInstance);
         when(jenkins.getDescriptorOrDie(CoverityPublisher.class)).thenReturn(descriptor);
     }
@@ -190,6 +214,150 @@ public class DefectReaderTest {
             "Coverity details: rootUrl/buildUrl/coverity_defects");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_withMaxDefects_limitsDefectsAddedToBuildAction() throws Descriptor.FormException, ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setDefectsPageSize(1000);
+        publisher.setMaxDefects(2500);
+
+        defectService.setupMergedDefects(3750);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with expected defect count
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertEquals(2500, buildAction.getValue().getDefects().size());
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Fetching the first 2,500 of 3,750 defects for stream \"test-stream\"",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 1,000 of 2,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 2,000 of 2,500)",
+            "[Coverity] Found 2,500 defects matching all filters",
+            "Coverity details: rootUrl/buildUrl/coverity_defects");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_incrementalWithoutPreviousBuild_fetchesAllDefects() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setFetchDefectsIncrementally(true);
+
+        defectService.setupMergedDefects(10);
+        configurationService.setupSnapshotList(createSnapshotList(5, 7));
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with expected defect count and snapshot
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertEquals(10, buildAction.getValue().getDefects().size());
+        assertEquals(Long.valueOf(7), buildAction.getValue().getSnapshotId());
+        assertEquals(0, buildAction.getValue().getIncrementalFetches());
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 10 defects matching all filters",
+            "Coverity details: rootUrl/buildUrl/coverity_defects");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_incrementalWithoutNewSnapshot_usesPreviousDefects() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setFetchDefectsIncrementally(true);
+
+        AbstractBuild<?, ?> previousBuild = mock(AbstractBuild.class);
+        CoverityBuildAction previousAction = new CoverityBuildAction(previousBuild, "test-project", "test-stream", cimInstanceName,
+            Arrays.asList(new CoverityDefect(10001L, "NULL_RETURNS", "function1", "file1.c"), new CoverityDefect(10002L, "FORWARD_NULL", "function2", "file2.c")));
+        previousAction.setSnapshot(7L, null, 0);
+        when(previousBuild.getAction(CoverityBuildAction.class)).thenReturn(previousAction);
+        doReturn(previousBuild).when(build).getPreviousBuild();
+
+        defectService.setupMergedDefects(10);
+        configurationService.setupSnapshotList(createSnapshotList(5, 7));
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with the defects of the previous build
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertEquals(2, buildAction.getValue().getDefects().size());
+        assertEquals(Long.valueOf(7), buildAction.getValue().getSnapshotId());
+        assertEquals(1, buildAction.getValue().getIncrementalFetches());
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] No new snapshot since snapshot 7, using the defects of the previous build",
+            "[Coverity] Found 2 defects matching all filters",
+            "[Coverity] 0 new and 0 fixed defects since the previous build",
+            "Coverity details: rootUrl/buildUrl/coverity_defects");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_countOnly_addsDefectCountToBuildAction() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setCountDefectsOnly(true);
+
+        defectService.setupMergedDefects(10);
+        configurationService.setupSnapshotList(createSnapshotList(5, 7));
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with the defect count and the counted snapshot
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertTrue(buildAction.getValue().isCountOnly());
+        assertEquals(10, buildAction.getValue().getDefectCount());
+        assertEquals(Long.valueOf(7), buildAction.getValue().getSnapshotId());
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 10 defects matching all filters",
+            "Coverity details: rootUrl/buildUrl/coverity_defects");
+    }
+
+    private static List<SnapshotIdDataObj> createSnapshotList(long... ids) {
+        List<SnapshotIdDataObj> snapshots = new ArrayList<>();
+        for (long id : ids) {
+            SnapshotIdDataObj snapshot = new SnapshotIdDataObj();
+            snapshot.setId(id);
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
     @Test
     public void getLatestDefectsForBuild_withMatchingDefectFilters_setsBuildResultAsFailed() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         // set initial state as success (result can only get worse)
@@ -217,6 +385,43 @@ public class DefectReaderTest {
             "[Coverity] Found 3 defects matching all filters");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_onlyNewDefects_withoutNewDefects_doesNotFailBuild() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).withFailBuild(true).build();
+        publisher.setOnlyNewDefects(true);
+
+        AbstractBuild<?, ?> previousBuild = mock(AbstractBuild.class);
+        CoverityBuildAction previousAction = new CoverityBuildAction(previousBuild, "test-project", "test-stream", cimInstanceName,
+            Arrays.asList(new CoverityDefect(2L, "TEST_CHECKER", "function2", "file2.c"), new CoverityDefect(0L, "TEST_CHECKER", "function0", "file0.c"),
+                new CoverityDefect(99L, "TEST_CHECKER", "function99", "file99.c"), new CoverityDefect(1L, "TEST_CHECKER", "function1", "file1.c")));
+        when(previousBuild.getAction(CoverityBuildAction.class)).thenReturn(previousAction);
+        doReturn(previousBuild).when(build).getPreviousBuild();
+
+        defectService.setupMergedDefects(3);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with the difference to the previous build
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertTrue(buildAction.getValue().isCompared());
+        assertEquals(0, buildAction.getValue().getNewDefectCount());
+        assertArrayEquals(new long[] {99L}, buildAction.getValue().getFixedCids());
+        verify(build, never()).setResult(any(Result.class));
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 3 defects matching all filters",
+            "[Coverity] 0 new and 1 fixed defects since the previous build");
+    }
+
     @Test
     public void getLatestDefectsForBuild_skipsFetchingDefects() throws Descriptor.FormException, ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         CoverityPublisher publisher = new CoverityPublisherBuilder().withSkipFetchingDefects(true).build();
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+public class DefectResultCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final ConnectionKey connection = new ConnectionKey("test-host", 8080, false, "credential-id");
+
+    private static List<CoverityDefect> createDefects(int count) {
+        final List<CoverityDefect> defects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            defects.add(new CoverityDefect(10000L + i, "NULL_RETURNS", i % 2 == 0 ? "function" + i : null, "file" + i + ".c"));
+        }
+        return defects;
+    }
+
+    @Test
+    public void get_returnsDefectsForSameSnapshotAndFilters() {
+        final DefectResultCache cache = new DefectResultCache(1000, 60000, null);
+        cache.put(new DefectResultCache.Key(connection, "test-stream", 7, "digest"), createDefects(10));
+
+        assertEquals(10, cache.get(new DefectResultCache.Key(connection, "test-stream", 7, "digest"), Integer.MAX_VALUE).size());
+        assertEquals(4, cache.get(new DefectResultCache.Key(connection, "test-stream", 7, "digest"), 4).size());
+        assertNull(cache.get(new DefectResultCache.Key(connection, "test-stream", 8, "digest"), Integer.MAX_VALUE));
+        assertNull(cache.get(new DefectResultCache.Key(connection, "test-stream", 7, "other-digest"), Integer.MAX_VALUE));
+        assertNull(cache.get(new DefectResultCache.Key(new ConnectionKey("test-host", 8080, false, "other-credential-id"), "test-stream", 7, "digest"), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void put_evictsByNumberOfDefects() {
+        final DefectResultCache cache = new DefectResultCache(1000, 60000, null);
+        cache.put(new DefectResultCache.Key(connection, "stream-1", 1, null), createDefects(600));
+        cache.put(new DefectResultCache.Key(connection, "stream-2", 1, null), createDefects(600));
+
+        assertEquals(600, cache.getDefectCount());
+        assertNull(cache.get(new DefectResultCache.Key(connection, "stream-1", 1, null), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void get_readsEvictedDefectsFromSpillDirectory() throws Exception {
+        final DefectResultCache cache = new DefectResultCache(1000, 60000, temporaryFolder.getRoot());
+        cache.put(new DefectResultCache.Key(connection, "stream-1", 1, null), createDefects(600));
+        cache.put(new DefectResultCache.Key(connection, "stream-2", 1, null), createDefects(600));
+
+        final List<CoverityDefect> defects = cache.get(new DefectResultCache.Key(connection, "stream-1", 1, null), Integer.MAX_VALUE);
+
+        assertEquals(600, defects.size());
+        assertEquals(10001L, (long)defects.get(1).getCid());
+        assertEquals("NULL_RETURNS", defects.get(1).getCheckerName());
+        assertNull(defects.get(1).getFunctionDisplayName());
+        assertEquals("function2", defects.get(2).getFunctionDisplayName());
+        assertEquals("file2.c", defects.get(2).getFilePathname());
+    }
+
+    @Test
+    public void get_returnsCachedTableWithoutCopying() {
+        final DefectResultCache cache = new DefectResultCache(1000, 60000, null);
+        final DefectResultCache.Key key = new DefectResultCache.Key(connection, "test-stream", 7, "digest");
+        cache.put(key, createDefects(10));
+
+        assertSame(cache.get(key, Integer.MAX_VALUE), cache.get(key, 100));
+    }
+
+    @Test
+    public void get_withLoader_fetchesDefectsOnceForConcurrentBuilds() throws Exception {
+        final DefectResultCache cache = new DefectResultCache(1000, 60000, null);
+        final DefectResultCache.Key key = new DefectResultCache.Key(connection, "test-stream", 7, "digest");
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DefectResultCache.Loader<IOException> loader = new DefectResultCache.Loader<IOException>() {
+            @Override
+            public List<CoverityDefect> load() throws IOException {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return createDefects(10);
+            }
+        };
+        final Callable<List<CoverityDefect>> build = new Callable<List<CoverityDefect>>() {
+            @Override
+            public List<CoverityDefect> call() throws IOException {
+                return cache.get(key, Integer.MAX_VALUE, loader);
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<List<CoverityDefect>> first = executor.submit(build);
+            loading.await(10, TimeUnit.SECONDS);
+            final Future<List<CoverityDefect>> second = executor.submit(build);
+            // give the second build time to find the running fetch
+            Thread.sleep(200);
+            release.countDown();
+
+            assertEquals(10, first.get(10, TimeUnit.SECONDS).size());
+            assertEquals(10, second.get(10, TimeUnit.SECONDS).size());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+
+public class ParallelPageFetcherTest {
+    private static final int TOTAL = 95;
+
+    /**
+     * Page source returning the start index of each page, with later pages answering faster than earlier ones
+     */
+    private static class TestPageSource implements ParallelPageFetcher.PageSource<Integer, CovRemoteServiceException_Exception> {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        @Override
+        public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+            requests.incrementAndGet();
+            final int current = concurrent.incrementAndGet();
+            synchronized (maxConcurrent) {
+                maxConcurrent.set(Math.max(maxConcurrent.get(), current));
+            }
+            try {
+                Thread.sleep(Math.max(0, 50 - startIndex / 2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return startIndex;
+        }
+
+        @Override
+        public int getTotal(Integer page) {
+            return TOTAL;
+        }
+
+        @Override
+        public boolean isRetryable(Exception e) {
+            return e instanceof IOException;
+        }
+    }
+
+    private static class RecordingListener implements ParallelPageFetcher.PageListener<Integer> {
+        private final List<Integer> pages = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void onPage(int startIndex, int total, Integer page) {
+            assertEquals(startIndex, page.intValue());
+            assertEquals(TOTAL, total);
+            pages.add(page);
+        }
+    }
+
+    @Test
+    public void fetch_deliversPagesInOrder() throws Exception {
+        final TestPageSource source = new TestPageSource();
+        final RecordingListener listener = new RecordingListener();
+
+        new ParallelPageFetcher(4, 0, 60000).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, listener);
+
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < TOTAL; i += 10) {
+            expected.add(i);
+        }
+        assertEquals(expected, listener.pages);
+        assertEquals(10, source.requests.get());
+        assertTrue(source.maxConcurrent.get() <= 4);
+    }
+
+    @Test
+    public void fetch_sequential_deliversPagesInOrder() throws Exception {
+        final TestPageSource source = new TestPageSource();
+        final RecordingListener listener = new RecordingListener();
+
+        new ParallelPageFetcher(1, 0, 60000).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, listener);
+
+        assertEquals(10, listener.pages.size());
+        assertEquals(1, source.maxConcurrent.get());
+    }
+
+    @Test
+    public void fetch_limitsRecordsToMaxRecords() throws Exception {
+        final TestPageSource source = new TestPageSource();
+        final RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onPage(int startIndex, int total, Integer page) {
+                assertEquals(30, total);
+                super.pages.add(page);
+            }
+        };
+
+        new ParallelPageFetcher(4, 0, 60000).fetch(source, CovRemoteServiceException_Exception.class, 10, 30, listener);
+
+        assertEquals(3, listener.pages.size());
+    }
+
+    @Test
+    public void fetch_withPageSizePolicy_adaptsPageSize() throws Exception {
+        final List<Integer> pageSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final TestPageSource source = new TestPageSource() {
+            @Override
+            public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+                pageSizes.add(pageSize);
+                return super.fetch(startIndex, pageSize);
+            }
+        };
+        final RecordingListener listener = new RecordingListener();
+
+        new ParallelPageFetcher(1, 0, 60000, new ParallelPageFetcher.PageSizePolicy() {
+            @Override
+            public int nextPageSize(int pageSize, long elapsedMillis, long pageBytes) {
+                return pageSize * 2;
+            }
+        }).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, listener);
+
+        assertEquals(Arrays.asList(0, 10, 30, 70), listener.pages);
+        assertEquals(Arrays.asList(10, 20, 40, 25), pageSizes);
+        assertEquals(1, source.maxConcurrent.get());
+    }
+
+    @Test
+    public void fetch_withPageSizePolicy_fetchesPagesInParallel() throws Exception {
+        final Map<Integer, Integer> pageSizes = new ConcurrentHashMap<>();
+        final TestPageSource source = new TestPageSource() {
+            @Override
+            public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+                pageSizes.put(startIndex, pageSize);
+                return super.fetch(startIndex, pageSize);
+            }
+        };
+        final RecordingListener listener = new RecordingListener();
+
+        new ParallelPageFetcher(4, 0, 60000, new ParallelPageFetcher.PageSizePolicy() {
+            @Override
+            public int nextPageSize(int pageSize, long elapsedMillis, long pageBytes) {
+                return pageSize * 2;
+            }
+        }).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, listener);
+
+        // the first window uses the size chosen after the first page, later pages the size chosen after the last page
+        assertEquals(Arrays.asList(0, 10, 30, 50, 70, 90), listener.pages);
+        assertEquals(Integer.valueOf(20), pageSizes.get(70));
+        assertEquals(Integer.valueOf(5), pageSizes.get(90));
+        assertTrue(source.maxConcurrent.get() <= 4);
+    }
+
+    @Test
+    public void adaptivePageSize_followsTargetLatency() {
+        final AdaptivePageSize pageSize = new AdaptivePageSize(1000, Long.MAX_VALUE, 100, 5000);
+
+        assertEquals(1250, pageSize.nextPageSize(1000, 800, -1));
+        assertEquals(2000, pageSize.nextPageSize(1000, 100, -1));
+        assertEquals(500, pageSize.nextPageSize(1000, 10000, -1));
+        assertEquals(5000, pageSize.nextPageSize(4000, 0, -1));
+        assertEquals(100, pageSize.nextPageSize(150, 5000, -1));
+    }
+
+    @Test
+    public void adaptivePageSize_followsTargetPageBytes() {
+        final AdaptivePageSize pageSize = new AdaptivePageSize(1000, 1000000, 100, 5000);
+
+        // fast responses, but large defects
+        assertEquals(1250, pageSize.nextPageSize(1000, 100, 800000));
+        assertEquals(500, pageSize.nextPageSize(1000, 100, 4000000));
+        // the slower of latency and size wins
+        assertEquals(800, pageSize.nextPageSize(1000, 1250, 500000));
+    }
+
+    @Test
+    public void fetch_retriesFailedPage() throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        final TestPageSource source = new TestPageSource() {
+            @Override
+            public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+                if (startIndex == 20 && failures.getAndIncrement() == 0) {
+                    throw new IOException("connection reset");
+                }
+                return super.fetch(startIndex, pageSize);
+            }
+        };
+        final RecordingListener listener = new RecordingListener();
+
+        new ParallelPageFetcher(4, 1, 60000).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, listener);
+
+        assertEquals(10, listener.pages.size());
+        assertEquals(2, failures.get());
+    }
+
+    @Test
+    public void fetch_rethrowsPageSourceException() throws Exception {
+        final CovRemoteServiceException_Exception expected = new CovRemoteServiceException_Exception("no permission", null);
+        final TestPageSource source = new TestPageSource() {
+            @Override
+            public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+                if (startIndex == 50) {
+                    throw expected;
+                }
+                return super.fetch(startIndex, pageSize);
+            }
+        };
+
+        try {
+            new ParallelPageFetcher(4, 3, 60000).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, new RecordingListener());
+            fail("Expected the page source exception");
+        } catch (CovRemoteServiceException_Exception e) {
+            assertEquals(expected, e);
+        }
+    }
+
+    @Test
+    public void fetch_stopsAfterTimeBudget() throws Exception {
+        final TestPageSource source = new TestPageSource() {
+            @Override
+            public Integer fetch(int startIndex, int pageSize) throws CovRemoteServiceException_Exception, IOException {
+                if (startIndex > 0) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return startIndex;
+            }
+        };
+
+        try {
+            new ParallelPageFetcher(4, 0, 200).fetch(source, CovRemoteServiceException_Exception.class, 10, Integer.MAX_VALUE, new RecordingListener());
+            fail("Expected fetching to time out");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Timed out"));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ServicePoolTest {
+    private final AtomicInteger created = new AtomicInteger();
+
+    private ServicePool<Object> createPool(int maxSize, long idleTimeout, long maxWait) {
+        return new ServicePool<>(new ServicePool.Factory<Object>() {
+            @Override
+            public Object create() throws IOException {
+                created.incrementAndGet();
+                return new Object();
+            }
+        }, maxSize, idleTimeout, maxWait);
+    }
+
+    @Test
+    public void checkout_reusesReturnedClient() throws IOException {
+        ServicePool<Object> pool = createPool(2, 60000, 1000);
+
+        Object client = pool.checkout();
+        pool.checkin(client);
+        Object client2 = pool.checkout();
+
+        assertSame(client, client2);
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(2, pool.getCheckoutCount());
+    }
+
+    @Test
+    public void checkout_createsClientForEachConcurrentCaller() throws IOException {
+        ServicePool<Object> pool = createPool(2, 60000, 1000);
+
+        Object client = pool.checkout();
+        Object client2 = pool.checkout();
+
+        assertNotSame(client, client2);
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(2, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void checkout_timesOutWhenPoolExhausted() throws IOException {
+        ServicePool<Object> pool = createPool(1, 60000, 10);
+
+        pool.checkout();
+        try {
+            pool.checkout();
+            fail("Expected the checkout to time out");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Timed out"));
+        }
+
+        assertEquals(1, pool.getWaitCount());
+    }
+
+    @Test
+    public void checkout_waitsForReturnedClient() throws Exception {
+        final ServicePool<Object> pool = createPool(1, 60000, 10000);
+        final Object client = pool.checkout();
+
+        Thread returningThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // return the client right away
+                }
+                pool.checkin(client);
+            }
+        });
+        returningThread.start();
+
+        Object client2 = pool.checkout();
+        returningThread.join();
+
+        assertSame(client, client2);
+        assertEquals(1, pool.getWaitCount());
+        assertTrue(pool.getMaxWaitMillis() > 0);
+    }
+
+    @Test
+    public void invalidate_releasesCapacityWithoutReuse() throws IOException {
+        ServicePool<Object> pool = createPool(1, 60000, 10);
+
+        Object client = pool.checkout();
+        pool.invalidate(client);
+        Object client2 = pool.checkout();
+
+        assertNotSame(client, client2);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void evictIdle_removesExpiredClients() throws Exception {
+        ServicePool<Object> pool = createPool(2, 0, 1000);
+
+        Object client = pool.checkout();
+        Object client2 = pool.checkout();
+        pool.checkin(client);
+        pool.checkin(client2);
+        Thread.sleep(5);
+
+        pool.evictIdle();
+
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2, pool.getEvictedCount());
+    }
+
+    @Test
+    public void close_releasesIdleClientsAndClientsReturnedLater() throws IOException {
+        final AtomicInteger closed = new AtomicInteger();
+        ServicePool<Closeable> pool = new ServicePool<>(new ServicePool.Factory<Closeable>() {
+            @Override
+            public Closeable create() throws IOException {
+                return new Closeable() {
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                };
+            }
+        }, 2, 60000, 1000);
+
+        Closeable client = pool.checkout();
+        Closeable client2 = pool.checkout();
+        pool.checkin(client);
+
+        pool.close();
+        assertEquals(1, closed.get());
+
+        pool.checkin(client2);
+        assertEquals(2, closed.get());
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Test;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.GetMergedDefectsForStreams;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+public class StreamingDefectServiceTest {
+
+    private static String envelope(String body) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>" + body + "</S:Body></S:Envelope>";
+    }
+
+    private static String mergedDefect(long cid) {
+        return "<mergedDefects>" +
+            "<checkerName>NULL_RETURNS</checkerName>" +
+            "<cid>" + cid + "</cid>" +
+            "<componentName>Default.Other</componentName>" +
+            "<defectStateAttributeValues>" +
+            "<attributeDefinitionId><name>DefectStatus</name></attributeDefinitionId>" +
+            "<attributeValueId><name>New</name></attributeValueId>" +
+            "</defectStateAttributeValues>" +
+            "<displayImpact>Medium</displayImpact>" +
+            "<filePathname>/src/file" + cid + ".c</filePathname>" +
+            "<firstDetected>2018-01-01T12:00:00.000-05:00</firstDetected>" +
+            "<functionDisplayName>function" + cid + "</functionDisplayName>" +
+            "<mergeKey>b2e7c8</mergeKey>" +
+            "</mergedDefects>";
+    }
+
+    private static DefectPage read(String xml) throws Exception {
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(
+            new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        try {
+            return StreamingDefectService.readResponse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readResponse_projectsMergedDefects() throws Exception {
+        final DefectPage page = read(envelope(
+            "<ns2:getMergedDefectsForStreamsResponse xmlns:ns2=\"http://ws.coverity.com/v9\"><return>" +
+            "<mergedDefectIds><cid>99</cid><mergeKey>b2e7c8</mergeKey></mergedDefectIds>" +
+            mergedDefect(10001) + mergedDefect(10002) +
+            "<totalNumberOfRecords>2500</totalNumberOfRecords>" +
+            "</return></ns2:getMergedDefectsForStreamsResponse>"));
+
+        assertEquals(2500, page.getTotalNumberOfRecords());
+        assertEquals(2, page.getDefects().size());
+
+        final CoverityDefect defect = page.getDefects().get(1);
+        assertEquals(10002L, (long)defect.getCid());
+        assertEquals("NULL_RETURNS", defect.getCheckerName());
+        assertEquals("function10002", defect.getFunctionDisplayName());
+        assertEquals("/src/file10002.c", defect.getFilePathname());
+    }
+
+    @Test
+    public void readResponse_missingAndNilFields_returnsNull() throws Exception {
+        final DefectPage page = read(envelope(
+            "<ns2:getMergedDefectsForStreamsResponse xmlns:ns2=\"http://ws.coverity.com/v9\" " +
+            "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><return>" +
+            "<mergedDefects><cid>5</cid><functionDisplayName xsi:nil=\"true\"/></mergedDefects>" +
+            "<totalNumberOfRecords>1</totalNumberOfRecords>" +
+            "</return></ns2:getMergedDefectsForStreamsResponse>"));
+
+        assertEquals(1, page.getDefects().size());
+        assertEquals(5L, (long)page.getDefects().get(0).getCid());
+        assertNull(page.getDefects().get(0).getCheckerName());
+        assertNull(page.getDefects().get(0).getFunctionDisplayName());
+        assertNull(page.getDefects().get(0).getFilePathname());
+    }
+
+    @Test
+    public void readResponse_coverityFault_throwsCovRemoteServiceException() throws Exception {
+        try {
+            read(envelope("<S:Fault><faultcode>S:Server</faultcode><faultstring>No stream found for name test-stream.</faultstring>" +
+                "<detail><ns2:CoverityFault xmlns:ns2=\"http://ws.coverity.com/v9\"><errorCode>1300</errorCode>" +
+                "<message>No stream found for name test-stream.</message></ns2:CoverityFault></detail></S:Fault>"));
+            fail("Expected the Coverity fault");
+        } catch (CovRemoteServiceException_Exception e) {
+            assertEquals("No stream found for name test-stream.", e.getMessage());
+            assertEquals(1300, e.getFaultInfo().getErrorCode());
+            assertEquals("No stream found for name test-stream.", e.getFaultInfo().getMessage());
+        }
+    }
+
+    @Test
+    public void readResponse_otherFault_throwsWebServiceException() throws Exception {
+        try {
+            read(envelope("<S:Fault><faultcode>S:Client</faultcode><faultstring>Authentication failed</faultstring></S:Fault>"));
+            fail("Expected the fault");
+        } catch (WebServiceException e) {
+            assertEquals("Authentication failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void writeRequest_writesSecuredEnvelope() throws Exception {
+        final StreamingDefectService service = new StreamingDefectService(new URL("http://localhost:8080/ws/v9/defectservice"),
+            "user<name>", "password", 1000, 1000);
+
+        final GetMergedDefectsForStreams request = new GetMergedDefectsForStreams();
+        final StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName("test-stream");
+        request.getStreamIds().add(streamId);
+        final PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(1000);
+        pageSpec.setStartIndex(2000);
+        request.setPageSpec(pageSpec);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeRequest(out, request);
+        final String xml = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(xml.contains("mustUnderstand=\"1\""));
+        assertTrue(xml.contains("Username>user&lt;name&gt;</"));
+        assertTrue(xml.contains("Password Type=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-username-token-profile-1.0#PasswordText\">password</"));
+        assertTrue(xml.contains("getMergedDefectsForStreams xmlns"));
+        assertTrue(xml.contains("<streamIds><name>test-stream</name></streamIds>"));
+        assertTrue(xml.contains("<pageSize>1000</pageSize>"));
+        assertTrue(xml.contains("<startIndex>2000</startIndex>"));
+    }
+}
@@ -15,7 +15,7 @@ import static org.mockito.Mockito.when;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -38,6 +38,18 @@ public class TestWebServiceFactory extends WebServiceFactory {
     private String responseMsg = "OK";
     private ViewsService _mockViewsService;
 
+    public TestWebServiceFactory() {
+        super();
+    }
+
+    public TestWebServiceFactory(int cacheMaxSize, long cacheIdleTimeoutMillis) {
+        super(cacheMaxSize, cacheIdleTimeoutMillis, 0);
+    }
+
+    public TestWebServiceFactory(int cacheMaxSize, long cacheIdleTimeoutMillis, long releaseDelayMillis) {
+        super(cacheMaxSize, cacheIdleTimeoutMillis, releaseDelayMillis);
+    }
+
     @Override
     protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
         return new TestDefectService(
@@ -65,7 +77,7 @@ public class TestWebServiceFactory extends WebServiceFactory {
     }
 
     @Override
-    public ViewsService getViewService(CIMInstance instance) throws MalformedURLException, NoSuchAlgorithmException {
+    public ViewsService getViewService(CIMInstance instance) throws MalformedURLException, GeneralSecurityException {
         if (_mockViewsService != null) {
             return _mockViewsService;
         }
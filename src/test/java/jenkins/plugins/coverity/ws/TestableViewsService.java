@@ -16,13 +16,18 @@ import static org.mockito.Matchers.contains;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 
@@ -30,6 +35,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
 
 /**
  * Utility for setting up (mocking) the required classes to return values from the views service REST API.
@@ -40,7 +46,7 @@ public final class TestableViewsService {
     public static void setupWithViewApi(String viewApiJsonResult) {
         Client restClient = mock(Client.class);
         PowerMockito.mockStatic(Client.class);
-        when(Client.create()).thenReturn(restClient);
+        when(Client.create(any(ClientConfig.class))).thenReturn(restClient);
         WebResource webResource = mock(WebResource.class);
         when(webResource.get(String.class)).thenReturn(viewApiJsonResult);
         when(restClient.resource(argThat(matchUriPath("/api/views/v1")))).thenReturn(webResource);
@@ -67,14 +73,20 @@ public final class TestableViewsService {
         setupWithViewApi(viewApiJsonBuilder.toString());
     }
 
-    public static void setupViewContentsApi(String viewName, int httpStatus, String viewContentsApiJsonResult) {
+    public static void setupViewContentsApi(String viewName, int httpStatus, final String viewContentsApiJsonResult) {
         Client restClient = mock(Client.class);
         PowerMockito.mockStatic(Client.class);
-        when(Client.create()).thenReturn(restClient);
+        when(Client.create(any(ClientConfig.class))).thenReturn(restClient);
         WebResource webResource = mock(WebResource.class);
         ClientResponse response = mock(ClientResponse.class);
         when(response.getStatus()).thenReturn(httpStatus);
         when(response.getEntity(String.class)).thenReturn(viewContentsApiJsonResult);
+        when(response.getEntityInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) {
+                return new ByteArrayInputStream(viewContentsApiJsonResult.getBytes(StandardCharsets.UTF_8));
+            }
+        });
         when(webResource.get(ClientResponse.class)).thenReturn(response);
         when(restClient.resource(argThat(matchUriPath("/api/viewContents/issues/v1/" + viewName)))).thenReturn(webResource);
     }
@@ -82,7 +94,7 @@ public final class TestableViewsService {
     public static void setupViewContentsApiThrows(ClientHandlerException exception, String viewName) {
         Client restClient = mock(Client.class);
         PowerMockito.mockStatic(Client.class);
-        when(Client.create()).thenReturn(restClient);
+        when(Client.create(any(ClientConfig.class))).thenReturn(restClient);
         WebResource webResource = mock(WebResource.class);
         when(webResource.get(ClientResponse.class)).thenThrow(exception);
         when(restClient.resource(argThat(matchUriPath("/api/viewContents/issues/v1/" + viewName)))).thenReturn(webResource);
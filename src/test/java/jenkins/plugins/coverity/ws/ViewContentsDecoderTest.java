@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+public class ViewContentsDecoderTest {
+
+    private static String createPage(int offset, int rowCount, int totalRows) {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"viewContentsV1\": {\"offset\": ").append(offset).append(", \"totalRows\": ").append(totalRows).append(", ");
+        json.append("\"columns\": [{\"name\": \"cid\", \"label\": \"CID\"}, {\"name\": \"checker\", \"label\": \"Checker\"}, ");
+        json.append("{\"name\": \"displayFile\", \"label\": \"File\"}, {\"name\": \"displayFunction\", \"label\": \"Function\"}, ");
+        json.append("{\"name\": \"owner\", \"label\": \"Owner\"}], ");
+        json.append("\"rows\": [");
+        for (int i = offset; i < offset + rowCount; i++) {
+            if (i > offset) {
+                json.append(", ");
+            }
+            json.append("{\"cid\": ").append(i)
+                .append(", \"checker\": \"FORWARD_NULL\"")
+                .append(", \"displayType\": \"Explicit null dereferenced\"")
+                .append(", \"displayImpact\": \"High\"")
+                .append(", \"owner\": {\"name\": \"Unassigned\", \"id\": 7}")
+                .append(", \"displayFile\": \"/src/module").append(i % 50).append("/source.cpp\"")
+                .append(", \"displayFunction\": \"function").append(i).append("\"}");
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    private static ViewContents decode(String json) throws IOException, ParseException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)) {
+            return ViewContentsDecoder.decode(reader);
+        }
+    }
+
+    @Test
+    public void decode_projectsRowsIntoDefects() throws Exception {
+        final ViewContents viewContents = decode(createPage(1000, 3, 2500));
+
+        assertEquals(2500L, (long)viewContents.getTotalRows());
+        assertEquals(1000L, (long)viewContents.getRowsOffset());
+        assertEquals(Arrays.asList("cid", "checker", "displayFile", "displayFunction", "owner"), viewContents.getColumns());
+        assertEquals(3, viewContents.getDefects().size());
+
+        final CoverityDefect defect = viewContents.getDefects().get(1);
+        assertEquals(1001L, (long)defect.getCid());
+        assertEquals("FORWARD_NULL", defect.getCheckerName());
+        assertEquals("/src/module1/source.cpp", defect.getFilePathname());
+        assertEquals("function1001", defect.getFunctionDisplayName());
+    }
+
+    @Test(expected = ParseException.class)
+    public void decode_truncatedPage_throwsParseException() throws Exception {
+        final String json = createPage(0, 25, 25);
+
+        decode(json.substring(0, json.length() / 2));
+    }
+
+    @Test
+    public void decode_missingColumns_returnsEmptyValues() throws Exception {
+        final ViewContents viewContents = decode("{\"viewContentsV1\": {\"offset\": 0, \"totalRows\": 1, " +
+            "\"columns\": [{\"name\": \"displayType\", \"label\": \"Type\"}], " +
+            "\"rows\": [{\"displayType\": \"Insufficient function coverage\"}]}}");
+
+        assertEquals(1, viewContents.getDefects().size());
+        assertNull(viewContents.getDefects().get(0).getCid());
+        assertNull(viewContents.getDefects().get(0).getCheckerName());
+        assertNull(viewContents.getDefects().get(0).getFilePathname());
+        assertNull(viewContents.getDefects().get(0).getFunctionDisplayName());
+    }
+
+    @Test
+    public void decode_passesRowsToHandler() throws Exception {
+        final List<Long> cids = new ArrayList<>();
+        final ViewContentsDecoder decoder = new ViewContentsDecoder(new ViewContentsDecoder.RowHandler() {
+            @Override
+            public void onRow(CoverityDefect defect) {
+                cids.add(defect.getCid());
+            }
+        });
+
+        decoder.parse(new InputStreamReader(new ByteArrayInputStream(createPage(10, 3, 13).getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList(10L, 11L, 12L), cids);
+        assertEquals(13L, decoder.getTotalRows());
+    }
+
+    /**
+     * Compares the bytes allocated to decode a 1000 row page with the previous approach, which read the response into
+     * a String, parsed it into a JSON tree and copied each row into a map before creating the defects
+     */
+    @Test
+    public void decode_thousandRowPage_allocatesLessThanTreeParsing() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final byte[] page = createPage(0, 1000, 1000).getBytes(StandardCharsets.UTF_8);
+        final long threadId = Thread.currentThread().getId();
+
+        long treeBytes = 0;
+        long streamingBytes = 0;
+        for (int iteration = 0; iteration < 20; iteration++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            final List<CoverityDefect> treeDefects = decodeWithTree(page);
+            final long tree = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            before = threadMXBean.getThreadAllocatedBytes(threadId);
+            final ViewContents streamed = ViewContentsDecoder.decode(new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8));
+            final long streaming = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            assertEquals(treeDefects.size(), streamed.getDefects().size());
+            // ignore the first iterations while the code is warming up
+            if (iteration >= 10) {
+                treeBytes += tree;
+                streamingBytes += streaming;
+            }
+        }
+
+        assertTrue("decoding allocated " + streamingBytes / 10 + " bytes per page, tree parsing " + treeBytes / 10,
+            streamingBytes * 4 < treeBytes * 3);
+    }
+
+    private static List<CoverityDefect> decodeWithTree(byte[] page) throws IOException, ParseException {
+        final String output = IOUtils.toString(new ByteArrayInputStream(page), "UTF-8");
+        final JSONObject json = (JSONObject)((JSONObject)new JSONParser().parse(output)).get("viewContentsV1");
+
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object row : (JSONArray)json.get("rows")) {
+            Map<String, Object> rowDetail = new HashMap<>();
+            for (Iterator iterator = ((JSONObject)row).entrySet().iterator(); iterator.hasNext();) {
+                Map.Entry entry = (Map.Entry)iterator.next();
+                rowDetail.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            rows.add(rowDetail);
+        }
+
+        final List<CoverityDefect> defects = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            defects.add(ViewContents.toDefect(row.get("cid"), row.get("checker"), row.get("displayFunction"),
+                row.get("displayFile"), row.get("displayComponent")));
+        }
+        return defects;
+    }
+}
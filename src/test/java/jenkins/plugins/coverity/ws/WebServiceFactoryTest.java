@@ -10,9 +10,19 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -126,4 +136,199 @@ public class WebServiceFactoryTest {
         Assert.assertTrue(result2 instanceof TestConfigurationService);
         Assert.assertEquals(getExpectedUrl(cimInstance, WebServiceFactory.CONFIGURATION_SERVICE_V9_WSDL), ((TestConfigurationService)result2).getUrl());
     }
+
+    @Test
+    public void getViewService_returns_same_instance_for_credential_clones() throws Exception {
+        CredentialUtil.setCredentialManager("test-user", "password");
+        WebServiceFactory factory = new TestWebServiceFactory();
+
+        ViewsService result = factory.getViewService(cimInstance);
+        ViewsService result2 = factory.getViewService(cimInstance.cloneWithCredential(cimInstance.getCredentialId()));
+        ViewsService result3 = factory.getViewService(cimInstance.cloneWithCredential("other-credential"));
+
+        Assert.assertSame(result, result2);
+        Assert.assertNotSame(result, result3);
+    }
+
+    @Test
+    public void getDefectService_slowInstance_doesNotBlockOtherInstances() throws Exception {
+        final CIMInstance slowInstance = new CIMInstanceBuilder().withName("slow instance").withHost("slow-cim-host").withPort(8080)
+                .withUseSSL(false).withDefaultCredentialId().build();
+        final CountDownLatch creationStarted = new CountDownLatch(1);
+        final CountDownLatch releaseCreation = new CountDownLatch(1);
+        final WebServiceFactory factory = new TestWebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                if (cimInstance == slowInstance) {
+                    creationStarted.countDown();
+                    try {
+                        releaseCreation.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.createDefectService(cimInstance);
+            }
+        };
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<DefectService> slowResult = executor.submit(new Callable<DefectService>() {
+                @Override
+                public DefectService call() throws Exception {
+                    return factory.getDefectService(slowInstance);
+                }
+            });
+            Assert.assertTrue(creationStarted.await(10, TimeUnit.SECONDS));
+
+            DefectService result = factory.getDefectService(cimInstance);
+
+            Assert.assertTrue(result instanceof TestDefectService);
+            Assert.assertFalse(slowResult.isDone());
+
+            releaseCreation.countDown();
+            Assert.assertTrue(slowResult.get(10, TimeUnit.SECONDS) instanceof TestDefectService);
+        } finally {
+            releaseCreation.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getDefectService_failedCreation_isNotCached() throws IOException {
+        final AtomicInteger attempts = new AtomicInteger();
+        WebServiceFactory factory = new TestWebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new MalformedURLException("unreachable");
+                }
+                return super.createDefectService(cimInstance);
+            }
+        };
+
+        try {
+            factory.getDefectService(cimInstance);
+            Assert.fail("Expected the first creation to fail");
+        } catch (MalformedURLException e) {
+            Assert.assertEquals("unreachable", e.getMessage());
+        }
+
+        DefectService result = factory.getDefectService(cimInstance);
+
+        Assert.assertTrue(result instanceof TestDefectService);
+        Assert.assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void getDefectService_credentialClonesForThousandsOfBuilds_reuseClients() throws IOException {
+        final AtomicInteger created = new AtomicInteger();
+        WebServiceFactory factory = new TestWebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                created.incrementAndGet();
+                return super.createDefectService(cimInstance);
+            }
+        };
+        final List<DefectService> clients = new ArrayList<>();
+
+        for (int build = 0; build < 5000; build++) {
+            CIMInstance clone = cimInstance.cloneWithCredential("stream-credential-" + (build % 3));
+            DefectService result = factory.getDefectService(clone);
+            if (!clients.contains(result)) {
+                clients.add(result);
+            }
+            factory.getDefectServicePool(clone);
+        }
+
+        Assert.assertEquals(3, created.get());
+        Assert.assertEquals(3, clients.size());
+        Assert.assertEquals(6, factory.getCachedConnectionCount());
+    }
+
+    @Test
+    public void getDefectService_distinctConnections_cacheIsBoundedAndReleasesEvictedClients() throws IOException {
+        final List<ClosableDefectService> clients = new ArrayList<>();
+        WebServiceFactory factory = new TestWebServiceFactory(10, 60000) {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                ClosableDefectService client = new ClosableDefectService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL));
+                clients.add(client);
+                return client;
+            }
+        };
+
+        for (int build = 0; build < 5000; build++) {
+            factory.getDefectService(cimInstance.cloneWithCredential("credential-" + build));
+        }
+
+        Assert.assertTrue(factory.getCachedConnectionCount() <= 10);
+        Assert.assertEquals(5000, clients.size());
+        int closed = 0;
+        for (ClosableDefectService client : clients) {
+            if (client.isClosed()) {
+                closed++;
+            }
+        }
+        Assert.assertTrue(closed >= 5000 - 10);
+    }
+
+    @Test
+    public void getDefectService_idleConnection_isReleased() throws Exception {
+        WebServiceFactory factory = new TestWebServiceFactory(10, 1);
+
+        DefectService result = factory.getDefectService(cimInstance);
+        Thread.sleep(10);
+        DefectService result2 = factory.getDefectService(cimInstance);
+
+        Assert.assertNotSame(result, result2);
+    }
+
+    @Test
+    public void getDefectService_evictedClient_isReleasedAfterDelay() throws IOException {
+        final List<ClosableDefectService> clients = new ArrayList<>();
+        WebServiceFactory factory = new TestWebServiceFactory(1, 60000, 60000) {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                ClosableDefectService client = new ClosableDefectService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL));
+                clients.add(client);
+                return client;
+            }
+        };
+
+        factory.getDefectService(cimInstance.cloneWithCredential("credential-1"));
+        factory.getDefectService(cimInstance.cloneWithCredential("credential-2"));
+
+        Assert.assertEquals(1, factory.getCachedConnectionCount());
+        Assert.assertEquals(2, clients.size());
+        // a build which got the first client before it was evicted may still be using it
+        Assert.assertFalse(clients.get(0).isClosed());
+    }
+
+    @Test
+    public void connectionKey_legacyCredentials_areDistinct() {
+        Assert.assertEquals(new ConnectionKey("cim-host", 8080, false, null, "digest1"),
+            new ConnectionKey("cim-host", 8080, false, null, "digest1"));
+        Assert.assertNotEquals(new ConnectionKey("cim-host", 8080, false, null, "digest1"),
+            new ConnectionKey("cim-host", 8080, false, null, "digest2"));
+        Assert.assertNotEquals(new ConnectionKey("cim-host", 8080, false, null, "digest1"),
+            new ConnectionKey("cim-host", 8080, false, null));
+    }
+
+    private static class ClosableDefectService extends TestDefectService implements Closeable {
+        private boolean closed;
+
+        public ClosableDefectService(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+    }
 }